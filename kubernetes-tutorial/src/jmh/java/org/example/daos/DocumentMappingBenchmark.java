@@ -0,0 +1,149 @@
+package org.example.daos;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.conversions.Bson;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Decimal128;
+import org.example.daos.codecs.Codecs;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.model.Bottle;
+import org.example.search.NameIndex;
+import org.example.search.PriceIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-document mapping done by the DAO codecs on every read and write, plus building
+ * the /beverages filter. Decoding starts from raw BSON bytes, as it does off the wire;
+ * decodeBeverageAsDocument is the cost of the generic Document map alone, for comparison.
+ * The filter benchmarks go through the index-backed path findFiltered uses, against a
+ * catalog of {@code catalogSize} beverages, and render the result as the driver does per query;
+ * filterFullColdIndex is the same request before the indexes have loaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DocumentMappingBenchmark {
+
+    private static final DecoderContext DECODE = DecoderContext.builder().build();
+    private static final EncoderContext ENCODE = EncoderContext.builder().build();
+
+    private final Codec<UnifiedBeverage> beverageCodec = Codecs.REGISTRY.get(UnifiedBeverage.class);
+    private final Codec<Bottle> bottleCodec = Codecs.REGISTRY.get(Bottle.class);
+    private final DocumentCodec documentCodec = new DocumentCodec(Codecs.REGISTRY);
+
+    private RawBsonDocument beverageDoubles;
+    private RawBsonDocument beverageMixed;
+    private RawBsonDocument bottleBson;
+    private Bottle bottle;
+
+    @Param({"10000"})
+    public int catalogSize;
+
+    private NameIndex names;
+    private PriceIndex prices;
+    private final NameIndex coldNames = new NameIndex();
+    private final PriceIndex coldPrices = new PriceIndex();
+
+    @Setup
+    public void setup() {
+        // shape written by UnifiedBeverageCodec
+        beverageDoubles = new RawBsonDocument(new UnifiedBeverage(
+                "Pils", 1, 1, 0.5, 0.79, 14.99, 34, 3, 60, true, 4.8), beverageCodec);
+        // legacy shape with Decimal128 / string / long values that go through the lenient readers
+        beverageMixed = new RawBsonDocument(new Document("bottleId", 2)
+                .append("name", "Helles")
+                .append("crateId", 2)
+                .append("volume", "0.5")
+                .append("pricePerBottle", new Decimal128(new BigDecimal("0.89")))
+                .append("pricePerCrate", 15)
+                .append("bottlesInStock", "17")
+                .append("cratesInStock", 5L)
+                .append("totalBottlesInCrates", 100)
+                .append("isAlcoholic", "true")
+                .append("volumePercent", new Decimal128(new BigDecimal("4.9"))), documentCodec);
+        bottle = new Bottle(3, "Boxbeutel", 0.75, true, 12.5, 5.79, "Divino", 11);
+        bottleBson = new RawBsonDocument(bottle, bottleCodec);
+
+        List<UnifiedBeverage> catalog = new ArrayList<>(catalogSize);
+        for (int i = 1; i <= catalogSize; i++) {
+            String name = (i % 20 == 0 ? "Club-Mate Cola " : "Pils ") + i;
+            Double crate = i % 2 == 0 ? 10.0 + i % 2000 / 100.0 : null;
+            catalog.add(new UnifiedBeverage(name, i, i, 0.5, 0.5 + i % 400 / 100.0, crate,
+                    i % 3, i % 2, i % 2 == 0 ? 20 * (i % 2) : null, true, 4.8));
+        }
+        names = new NameIndex();
+        names.replaceAll(catalog);
+        prices = new PriceIndex();
+        prices.replaceAll(catalog);
+    }
+
+    @Benchmark
+    public UnifiedBeverage decodeBeverageDoubles() {
+        return beverageCodec.decode(reader(beverageDoubles), DECODE);
+    }
+
+    @Benchmark
+    public UnifiedBeverage decodeBeverageMixed() {
+        return beverageCodec.decode(reader(beverageMixed), DECODE);
+    }
+
+    @Benchmark
+    public Document decodeBeverageAsDocument() {
+        return documentCodec.decode(reader(beverageDoubles), DECODE);
+    }
+
+    @Benchmark
+    public Bottle decodeBottle() {
+        return bottleCodec.decode(reader(bottleBson), DECODE);
+    }
+
+    @Benchmark
+    public int encodeBottle() {
+        BasicOutputBuffer out = new BasicOutputBuffer(128);
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(out)) {
+            bottleCodec.encode(writer, bottle, ENCODE);
+        }
+        return out.getPosition();
+    }
+
+    @Benchmark
+    public BsonDocument filterEmpty() {
+        return render(BeverageDaoMongo.filter(names, prices, false, null, null, null));
+    }
+
+    @Benchmark
+    public BsonDocument filterName() {
+        return render(BeverageDaoMongo.filter(names, prices, false, "cola", null, null));
+    }
+
+    @Benchmark
+    public BsonDocument filterFull() {
+        return render(BeverageDaoMongo.filter(names, prices, true, "cola", 1.0, 2.0));
+    }
+
+    @Benchmark
+    public BsonDocument filterFullColdIndex() {
+        return render(BeverageDaoMongo.filter(coldNames, coldPrices, true, "cola", 1.0, 2.0));
+    }
+
+    private static BsonDocument render(Bson filter) {
+        return filter.toBsonDocument(BsonDocument.class, Codecs.REGISTRY);
+    }
+
+    private static BsonBinaryReader reader(RawBsonDocument doc) {
+        return new BsonBinaryReader(doc.getByteBuffer().asNIO());
+    }
+}
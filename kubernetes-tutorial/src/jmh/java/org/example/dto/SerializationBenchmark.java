@@ -0,0 +1,87 @@
+package org.example.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.dto.bottleDTOs.SingleBottle;
+import org.example.dto.crateDTOs.SingleCrate;
+import org.example.model.Bottle;
+import org.example.model.Crate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Domain-to-DTO conversion and Jackson serialization of list responses
+ * the size of a large catalog page, in each negotiable response format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private Bottle bottle;
+    private Crate crate;
+    private List<SingleBottle> bottles;
+    private List<SingleCrate> crates;
+    private List<UnifiedBeverage> beverages;
+
+    @Setup
+    public void setup() {
+        mapper = switch (format) {
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> new ObjectMapper();
+        };
+        bottle = new Bottle(1, "Pils", 0.5, true, 4.8, 0.79, "Keesmann", 34);
+        crate = new Crate(1, bottle, 20, 14.99, 3);
+        bottles = new ArrayList<>(size);
+        crates = new ArrayList<>(size);
+        beverages = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Bottle b = new Bottle(i, "Bottle " + i, 0.5, i % 2 == 0, 4.8, 0.79 + i % 100, "Supplier " + i % 17, i % 50);
+            Crate c = new Crate(i, b, 20, 14.99 + i % 100, i % 9);
+            bottles.add(SingleBottle.of(b));
+            crates.add(SingleCrate.of(c));
+            beverages.add(new UnifiedBeverage(b.getName(), i, i, 0.5, b.getPrice(), c.getPrice(),
+                    b.getInStock(), c.getInStock(), 20 * c.getInStock(), b.getIsAlcoholic(), 4.8));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SingleBottle singleBottleOf() {
+        return SingleBottle.of(bottle);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SingleCrate singleCrateOf() {
+        return SingleCrate.of(crate);
+    }
+
+    @Benchmark
+    public byte[] serializeBottles() throws Exception {
+        return mapper.writeValueAsBytes(bottles);
+    }
+
+    @Benchmark
+    public byte[] serializeCrates() throws Exception {
+        return mapper.writeValueAsBytes(crates);
+    }
+
+    @Benchmark
+    public byte[] serializeBeverages() throws Exception {
+        return mapper.writeValueAsBytes(beverages);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.search;
+
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Name search and autocomplete answered from the in-memory index, for a catalog of
+ * {@code size} beverages with names of the form "Brand Style n".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NameIndexBenchmark {
+
+    private static final String[] BRANDS = {"Keesmann", "Mahrs", "Schlenkerla", "Spezial", "Fässla", "Club-Mate", "Fanta"};
+    private static final String[] STYLES = {"Pils", "Helles", "Lager", "Rauchbier", "Weizen", "Kola", "Orange"};
+
+    @Param({"10000"})
+    public int size;
+
+    private NameIndex index;
+    private List<UnifiedBeverage> beverages;
+
+    @Setup
+    public void setup() {
+        beverages = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String name = BRANDS[i % BRANDS.length] + " " + STYLES[(i / 7) % STYLES.length] + " " + i;
+            beverages.add(new UnifiedBeverage(name, i, i, 0.5, 0.79, 14.99, i % 3, i % 2, 0, true, 4.8));
+        }
+        index = new NameIndex();
+        index.replaceAll(beverages);
+    }
+
+    @Benchmark
+    public Set<Integer> matchingRare() {
+        return index.matching("rauchbier 99");
+    }
+
+    @Benchmark
+    public Set<Integer> matchingCommon() {
+        return index.matching("pils");
+    }
+
+    @Benchmark
+    public List<NameIndex.Suggestion> suggestPrefix() {
+        return index.suggest("schl", 10, true);
+    }
+
+    @Benchmark
+    public List<NameIndex.Suggestion> suggestSubstring() {
+        return index.suggest("weiz", 10, true);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int replaceAll() {
+        NameIndex fresh = new NameIndex();
+        fresh.replaceAll(beverages);
+        return fresh.size();
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.search;
+
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Price range filters answered from the sorted price arrays, and the copy-on-write cost
+ * of a single write, for {@code size} beverages of which half are also sold in crates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PriceIndexBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    private PriceIndex index;
+    private List<UnifiedBeverage> beverages;
+    private List<UnifiedBeverage> oneWrite;
+
+    @Setup
+    public void setup() {
+        beverages = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Double crate = i % 2 == 0 ? 10.0 + i % 2000 / 100.0 : null;
+            beverages.add(new UnifiedBeverage("Bottle " + i, i, i, 0.5, 0.5 + i % 400 / 100.0, crate,
+                    i % 3, i % 2, i % 2 == 0 ? 20 * (i % 2) : null, true, 4.8));
+        }
+        index = new PriceIndex();
+        index.replaceAll(beverages);
+        oneWrite = List.of(beverages.get(size / 2));
+    }
+
+    @Benchmark
+    public BitSet rangeNarrow() {
+        return index.range(1.0, 1.05);
+    }
+
+    @Benchmark
+    public BitSet rangeWide() {
+        return index.range(1.0, 15.0);
+    }
+
+    @Benchmark
+    public BitSet rangeInStock() {
+        BitSet ids = index.range(1.0, 15.0);
+        ids.and(index.inStock());
+        return ids;
+    }
+
+    @Benchmark
+    public int putOne() {
+        index.putAll(oneWrite);
+        return index.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int replaceAll() {
+        PriceIndex fresh = new PriceIndex();
+        fresh.replaceAll(beverages);
+        return fresh.size();
+    }
+}
@@ -1,16 +1,42 @@
 package org.example;
 
+import com.fasterxml.jackson.jakarta.rs.cbor.JacksonCBORProvider;
+import com.fasterxml.jackson.jakarta.rs.smile.JacksonSmileProvider;
+import org.glassfish.grizzly.http.CompressionConfig;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import jakarta.inject.Singleton;
+import org.example.caching.ConditionalGetFilter;
+import org.example.consistency.CausalSessionFilter;
+import org.example.consistency.CausalSessions;
+import org.example.db.CollectionVersions;
+import org.example.db.HealthProber;
+import org.example.db.IdAllocator;
+import org.example.db.IndexManager;
 import org.example.db.MongoClientProvider;
+import org.example.db.ReactiveMongoClientProvider;
+import org.example.db.PoolStats;
+import org.example.db.PoolWarmer;
+import org.example.logging.AccessLogFilter;
+import org.example.logging.RequestLog;
+import org.example.search.NameIndex;
+import org.example.search.PriceIndex;
+import org.example.search.SearchIndexLoader;
+import org.example.metrics.MetricsFilter;
+import org.example.server.VirtualThreadWorkerPool;
 
 
 import java.net.URI;
+import java.util.logging.Level;
 
 public class Main {
+    private static final RequestLog log = RequestLog.get("Main");
+
     public static void main(String[] args) throws Exception {
         int port = Integer.parseInt(System.getenv().getOrDefault("PORT", "8080"));
         URI baseUri = URI.create("http://0.0.0.0:" + port + "/");
@@ -20,11 +46,51 @@ public class Main {
                         "org.example.resources",
                         "org.glassfish.jersey.jackson"
                 )
+                .register(MetricsFilter.class)
+                .register(AccessLogFilter.class)
+                .register(ConditionalGetFilter.class)
+                .register(CausalSessionFilter.class)
+                .register(JacksonCBORProvider.class)
+                .register(JacksonSmileProvider.class)
                 .register(new AbstractBinder() {
                     @Override protected void configure() {
+                        bind(PoolStats.class)
+                                .to(PoolStats.class)
+                                .in(Singleton.class);
                         bindFactory(MongoClientProvider.class)
                                 .to(com.mongodb.client.MongoClient.class)
                                 .in(Singleton.class);
+                        bindFactory(ReactiveMongoClientProvider.class)
+                                .to(com.mongodb.reactivestreams.client.MongoClient.class)
+                                .in(Singleton.class);
+
+                        bind(HealthProber.class)
+                                .to(HealthProber.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(CollectionVersions.class)
+                                .to(CollectionVersions.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(CausalSessions.class)
+                                .to(CausalSessions.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(NameIndex.class)
+                                .to(NameIndex.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(PriceIndex.class)
+                                .to(PriceIndex.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(SearchIndexLoader.class)
+                                .to(SearchIndexLoader.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(IdAllocator.class)
+                                .to(IdAllocator.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(IndexManager.class)
+                                .to(IndexManager.class)
+                                .in(jakarta.inject.Singleton.class);
+                        bind(PoolWarmer.class)
+                                .to(PoolWarmer.class)
+                                .in(jakarta.inject.Singleton.class);
 
                         bind(org.example.daos.BottleDaoMongo.class)
                                 .to(org.example.daos.BottleDaoMongo.class)
@@ -40,6 +106,14 @@ public class Main {
                                 .to(org.example.services.CrateService.class)
                                 .in(jakarta.inject.Singleton.class);
 
+                        bind(org.example.services.BulkImportService.class)
+                                .to(org.example.services.BulkImportService.class)
+                                .in(jakarta.inject.Singleton.class);
+
+                        bind(org.example.services.BeverageProjector.class)
+                                .to(org.example.services.BeverageProjector.class)
+                                .in(jakarta.inject.Singleton.class);
+
                         bind(org.example.daos.BeverageDaoMongo.class)
                                 .to(org.example.daos.BeverageDaoMongo.class)
                                 .in(jakarta.inject.Singleton.class);
@@ -47,13 +121,59 @@ public class Main {
                                 .to(org.example.services.BeverageService.class)
                                 .in(jakarta.inject.Singleton.class);
                     }
+                })
+                .register(new ContainerLifecycleListener() {
+                    @Override public void onStartup(Container container) {
+                        var injector = container.getApplicationHandler().getInjectionManager();
+                        injector.getInstance(PoolWarmer.class).run();
+                        injector.getInstance(HealthProber.class).start();
+                        injector.getInstance(CollectionVersions.class).start();
+                        injector.getInstance(SearchIndexLoader.class).start();
+                        injector.getInstance(IndexManager.class).start();
+                        if (Boolean.parseBoolean(System.getenv().getOrDefault("BEVERAGES_REBUILD_ON_STARTUP", "false"))) {
+                            try {
+                                injector.getInstance(org.example.services.BeverageProjector.class).rebuild();
+                            } catch (com.mongodb.MongoException e) {
+                                log.log(Level.WARNING, "beverages rebuild", "error", e.getMessage());
+                            }
+                        }
+                    }
+                    @Override public void onReload(Container container) {}
+                    @Override public void onShutdown(Container container) {
+                        var injector = container.getApplicationHandler().getInjectionManager();
+                        injector.getInstance(HealthProber.class).stop();
+                        injector.getInstance(CollectionVersions.class).stop();
+                        injector.getInstance(SearchIndexLoader.class).stop();
+                    }
                 });
 
         HttpServer server = GrizzlyHttpServerFactory.createHttpServer(baseUri, rc, false);
+
+        // SERVER_THREADS=virtual runs each request on a virtual thread, capped at MAX_IN_FLIGHT_REQUESTS
+        String threads = System.getenv().getOrDefault("SERVER_THREADS", "platform");
+        if ("virtual".equalsIgnoreCase(threads)) {
+            int maxInFlight = Integer.parseInt(System.getenv().getOrDefault("MAX_IN_FLIGHT_REQUESTS", "1024"));
+            VirtualThreadWorkerPool workers = new VirtualThreadWorkerPool(maxInFlight);
+            for (NetworkListener listener : server.getListeners()) {
+                listener.getTransport().setWorkerThreadPool(workers);
+            }
+        }
+
+        // gzip responses of at least GZIP_MIN_SIZE bytes for clients that accept it; HTTP_COMPRESSION=off disables
+        if (!"off".equalsIgnoreCase(System.getenv().getOrDefault("HTTP_COMPRESSION", "on"))) {
+            int minSize = Integer.parseInt(System.getenv().getOrDefault("GZIP_MIN_SIZE", "1024"));
+            for (NetworkListener listener : server.getListeners()) {
+                CompressionConfig cc = listener.getCompressionConfig();
+                cc.setCompressionMode(CompressionConfig.CompressionMode.ON);
+                cc.setCompressionMinSize(minSize);
+                cc.setCompressibleMimeTypes("application/json", "application/cbor",
+                        "application/x-jackson-smile", "application/x-ndjson", "text/plain");
+            }
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(server::shutdownNow));
         server.start();
 
-        System.out.printf("Beverage Service running at http://localhost:%d%n", port);
+        System.out.printf("Beverage Service running at http://localhost:%d (%s threads)%n", port, threads);
         Thread.currentThread().join();
     }
 }
@@ -0,0 +1,151 @@
+package org.example.caching;
+
+import com.mongodb.client.ClientSession;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.CloseableService;
+import org.bson.BsonTimestamp;
+import org.example.consistency.CausalSessionFilter;
+import org.example.consistency.CausalSessions;
+import org.example.db.CollectionVersions;
+import org.example.metrics.MetricsFilter;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Strong ETags for {@link Versioned} GETs, built from the in-memory collection versions plus
+ * the role and the Accept and Accept-Encoding headers. A matching If-None-Match is answered with 304 before the
+ * resource method runs, so neither Mongo nor the serializer is touched.
+ *
+ * Reads may go to a secondary that lags behind the version. Otherwise it could render pre-write
+ * data under the post-write tag, and clients would revalidate into 304s on stale data. So a
+ * request that gets a tag reads in a causal session at the tag's operation time; the
+ * secondary waits until it has replicated that far. This filter runs after
+ * {@link CausalSessionFilter}, so an employee's session is advanced rather than replaced.
+ *
+ * Cache-Control comes from CACHE_CONTROL_ROUTES, e.g.
+ * "/beverages=private, max-age=30;/bottles/id/{id}=no-cache"; versioned routes without an
+ * entry get CACHE_CONTROL_DEFAULT (default "private, no-cache", i.e. always revalidate).
+ */
+@Provider
+@Priority(Priorities.USER + 100)
+public class ConditionalGetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String DEFAULT_CACHE_CONTROL =
+            System.getenv().getOrDefault("CACHE_CONTROL_DEFAULT", "private, no-cache");
+    private static final Map<String, String> ROUTE_CACHE_CONTROL =
+            parseRoutes(System.getenv().getOrDefault("CACHE_CONTROL_ROUTES", ""));
+    private static final String ETAG = ConditionalGetFilter.class.getName() + ".etag";
+
+    @Inject
+    CollectionVersions versions;
+
+    @Inject
+    CausalSessions sessions;
+
+    @Context
+    CloseableService closeables;
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext req) {
+        Versioned versioned = versioned(req);
+        if (versioned == null) return;
+        CollectionVersions.Stamp[] stamps = stamps(versioned);
+        if (stamps == null) return;
+        EntityTag tag = entityTag(req, stamps);
+        Response.ResponseBuilder notModified = req.getRequest().evaluatePreconditions(tag);
+        if (notModified != null) {
+            req.abortWith(notModified.build());
+            return;
+        }
+        BsonTimestamp after = latest(stamps);
+        if (after != null) {
+            ClientSession started = sessions.readAfter(after);
+            if (started != null) closeables.add(started::close);
+        }
+        req.setProperty(ETAG, tag);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext req, ContainerResponseContext res) {
+        if (!HttpMethod.GET.equals(req.getMethod())) return;
+        int status = res.getStatus();
+        if (status != 200 && status != 304) return;
+
+        Object tag = req.getProperty(ETAG);
+        if (tag != null && status == 200) res.getHeaders().putSingle(HttpHeaders.ETAG, tag);
+
+        String cacheControl = ROUTE_CACHE_CONTROL.get(MetricsFilter.route(req));
+        if (cacheControl == null && (tag != null || status == 304)) cacheControl = DEFAULT_CACHE_CONTROL;
+        if (cacheControl != null) {
+            res.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, cacheControl);
+            // added, not replaced: the gzip and identity bodies are both cacheable under this URL
+            res.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            res.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+    }
+
+    private Versioned versioned(ContainerRequestContext req) {
+        if (!HttpMethod.GET.equals(req.getMethod())) return null;
+        Method m = resourceInfo.getResourceMethod();
+        return m == null ? null : m.getAnnotation(Versioned.class);
+    }
+
+    /** Null while any of the collection versions is unknown; such responses are never cached. */
+    private CollectionVersions.Stamp[] stamps(Versioned versioned) {
+        String[] collections = versioned.value();
+        CollectionVersions.Stamp[] stamps = new CollectionVersions.Stamp[collections.length];
+        for (int i = 0; i < collections.length; i++) {
+            stamps[i] = versions.stamp(collections[i]);
+            if (stamps[i] == null) return null;
+        }
+        return stamps;
+    }
+
+    // the newest operation time of the versions in the tag; null on a standalone server
+    private static BsonTimestamp latest(CollectionVersions.Stamp[] stamps) {
+        BsonTimestamp latest = null;
+        for (CollectionVersions.Stamp s : stamps) {
+            if (s.operationTime != null && (latest == null || s.operationTime.compareTo(latest) > 0)) latest = s.operationTime;
+        }
+        return latest;
+    }
+
+    private static EntityTag entityTag(ContainerRequestContext req, CollectionVersions.Stamp[] stamps) {
+        StringBuilder sb = new StringBuilder();
+        for (CollectionVersions.Stamp s : stamps) sb.append(s.version).append('.');
+        // the same URL renders differently per role (stock filtering), media type and content
+        // coding (the server gzips for clients that accept it), so each variant gets its own tag
+        String variant = req.getSecurityContext().isUserInRole("employee") + " " + req.getHeaderString(HttpHeaders.ACCEPT)
+                + " " + req.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        sb.append(Integer.toHexString(variant.hashCode()));
+        return new EntityTag(sb.toString());
+    }
+
+    private static Map<String, String> parseRoutes(String spec) {
+        Map<String, String> routes = new HashMap<>();
+        for (String entry : spec.split(";")) {
+            int eq = entry.indexOf('=');
+            if (eq <= 0) continue;
+            routes.put(entry.substring(0, eq).trim(), entry.substring(eq + 1).trim());
+        }
+        return Map.copyOf(routes);
+    }
+}
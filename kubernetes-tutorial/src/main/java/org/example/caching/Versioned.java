@@ -0,0 +1,17 @@
+package org.example.caching;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET resource method whose response depends only on the request and the
+ * named collections, so it can be answered with 304 while their versions are unchanged.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Versioned {
+    /** Collections the response is built from. */
+    String[] value();
+}
@@ -0,0 +1,60 @@
+package org.example.consistency;
+
+import com.mongodb.client.ClientSession;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+import org.bson.BsonTimestamp;
+import org.glassfish.jersey.server.CloseableService;
+
+/**
+ * Gives every employee request a causally consistent session. A client that sends back the
+ * X-Causal-Token of an earlier response reads its own writes from that request too, whichever
+ * replica serves it. Customer requests get no session and read from secondaries as usual.
+ */
+@Provider
+public class CausalSessionFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String HEADER = "X-Causal-Token";
+    private static final String SESSION = CausalSessionFilter.class.getName() + ".session";
+
+    @Inject
+    CausalSessions sessions;
+
+    @Context
+    CloseableService closeables;
+
+    @Override
+    public void filter(ContainerRequestContext req) {
+        CausalSessions.unbind();
+        if (!req.getSecurityContext().isUserInRole("employee")) return;
+
+        BsonTimestamp after = null;
+        String token = req.getHeaderString(HEADER);
+        if (token != null && !token.isBlank()) {
+            try {
+                after = CausalSessions.parseToken(token.trim());
+            } catch (IllegalArgumentException e) {
+                req.abortWith(Response.status(Response.Status.BAD_REQUEST).entity("Invalid " + HEADER).build());
+                return;
+            }
+        }
+        ClientSession session = sessions.begin(after);
+        req.setProperty(SESSION, session);
+        // closed after the entity is written, so streamed cursors opened in the session can finish
+        closeables.add(session::close);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext req, ContainerResponseContext res) {
+        CausalSessions.unbind();
+        if (!(req.getProperty(SESSION) instanceof ClientSession session)) return;
+        BsonTimestamp operationTime = session.getOperationTime();
+        if (operationTime != null) res.getHeaders().putSingle(HEADER, CausalSessions.token(operationTime));
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.consistency;
+
+import com.mongodb.ClientSessionOptions;
+import com.mongodb.ReadConcern;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.BsonTimestamp;
+import org.example.db.Publishers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Causally consistent client sessions for employee requests, so a read that follows a write
+ * sees it even when reads go to a secondary: the driver sends the session's operation time
+ * as afterClusterTime and the secondary waits until it has replicated that far.
+ *
+ * Causal guarantees only survive a primary failover when reads and writes in the session use
+ * majority read and write concern, so the DAOs run every session operation on the collection
+ * returned by {@link #majority}.
+ *
+ * The session of the current request is bound to the request thread and picked up by the
+ * DAOs; requests without one use implicit sessions. Across requests the operation time is
+ * carried by the opaque X-Causal-Token header (see {@link CausalSessionFilter}).
+ */
+@Singleton
+public class CausalSessions {
+
+    private static final ThreadLocal<ClientSession> CURRENT = new ThreadLocal<>();
+    private static final ClientSessionOptions OPTIONS = ClientSessionOptions.builder().causallyConsistent(true).build();
+
+    private final MongoClient client;
+    private final com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+
+    @Inject
+    public CausalSessions(MongoClient client, com.mongodb.reactivestreams.client.MongoClient reactiveClient) {
+        this.client = client;
+        this.reactiveClient = reactiveClient;
+    }
+
+    /** The collection with majority read and write concern, for operations in a causal session. */
+    public static <T> MongoCollection<T> majority(MongoCollection<T> collection) {
+        return collection.withReadConcern(ReadConcern.MAJORITY).withWriteConcern(WriteConcern.MAJORITY);
+    }
+
+    public static <T> com.mongodb.reactivestreams.client.MongoCollection<T> majority(
+            com.mongodb.reactivestreams.client.MongoCollection<T> collection) {
+        return collection.withReadConcern(ReadConcern.MAJORITY).withWriteConcern(WriteConcern.MAJORITY);
+    }
+
+    /** The causal session of the request on this thread, or null. */
+    public static ClientSession current() {
+        return CURRENT.get();
+    }
+
+    /** Starts a session that reads at least as new as {@code after} (may be null) and binds it to this thread. */
+    public ClientSession begin(BsonTimestamp after) {
+        ClientSession session = client.startSession(OPTIONS);
+        if (after != null) session.advanceOperationTime(after);
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * Makes the rest of this request read at least as new as {@code after}: advances the bound
+     * session, or starts and binds one when the request has none. Returns the session it started,
+     * which the caller must close once the response is written, or null.
+     */
+    public ClientSession readAfter(BsonTimestamp after) {
+        ClientSession session = current();
+        if (session == null) return begin(after);
+        session.advanceOperationTime(after);
+        return null;
+    }
+
+    /**
+     * Runs an async read in the causal chain of the current request. Must be called on the request
+     * thread. Without a causal session {@code read} gets null and uses an implicit session. Otherwise
+     * it gets a reactive session that starts at the request session's times; when the read completes,
+     * the request session is advanced past it and the reactive session is closed.
+     */
+    public <T> CompletableFuture<T> async(
+            Function<com.mongodb.reactivestreams.client.ClientSession, CompletableFuture<T>> read) {
+        ClientSession sync = current();
+        if (sync == null) return read.apply(null);
+        return Publishers.first(reactiveClient.startSession(OPTIONS)).thenCompose(session -> {
+            if (sync.getClusterTime() != null) session.advanceClusterTime(sync.getClusterTime());
+            if (sync.getOperationTime() != null) session.advanceOperationTime(sync.getOperationTime());
+            return read.apply(session).whenComplete((result, error) -> {
+                if (session.getOperationTime() != null) sync.advanceOperationTime(session.getOperationTime());
+                session.close();
+            });
+        });
+    }
+
+    /** Unbinds the session from this thread; it stays open until the response has been written. */
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    public static String token(BsonTimestamp operationTime) {
+        return Long.toHexString(operationTime.getValue());
+    }
+
+    /** @throws IllegalArgumentException if the token was not produced by {@link #token} */
+    public static BsonTimestamp parseToken(String token) {
+        try {
+            return new BsonTimestamp(Long.parseUnsignedLong(token, 16));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid causal token", e);
+        }
+    }
+}
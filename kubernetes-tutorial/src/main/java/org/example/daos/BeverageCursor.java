@@ -0,0 +1,35 @@
+package org.example.daos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for /beverages. It encodes the sort key (name, bottleId)
+ * of the last item on a page; the next page starts strictly after it.
+ */
+public final class BeverageCursor {
+    public final String name;
+    public final int bottleId;
+
+    public BeverageCursor(String name, int bottleId) {
+        this.name = name;
+        this.bottleId = bottleId;
+    }
+
+    public String encode() {
+        String raw = bottleId + ":" + (name == null ? "" : name);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if the token was not produced by {@link #encode()} */
+    public static BeverageCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int sep = raw.indexOf(':');
+        if (sep <= 0) throw new IllegalArgumentException("Malformed cursor");
+        try {
+            return new BeverageCursor(raw.substring(sep + 1), Integer.parseInt(raw.substring(0, sep)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
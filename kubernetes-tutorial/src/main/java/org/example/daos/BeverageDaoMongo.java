@@ -1,25 +1,41 @@
 package org.example.daos;
 
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Sorts;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.bson.Document;
-import org.bson.types.Decimal128;
+import org.bson.conversions.Bson;
+import org.example.consistency.CausalSessions;
+import org.example.daos.codecs.Codecs;
+import org.example.db.CollectionVersions;
+import org.example.db.MongoSettings;
+import org.example.db.Publishers;
 import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.search.NameIndex;
+import org.example.search.PriceIndex;
 
-import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 
 import static com.mongodb.client.model.Filters.*;
+import static org.example.consistency.CausalSessions.majority;
 
 @Singleton
 public class BeverageDaoMongo {
 
+    private static final Bson KEYSET_SORT = Sorts.ascending("name", "bottleId");
+
     public static final class PagedResult<T> {
         public final List<T> items; public final long total; public final int page; public final int perPage;
         public PagedResult(List<T> items, long total, int page, int perPage) {
@@ -27,24 +43,148 @@ public class BeverageDaoMongo {
         }
     }
 
-    private final MongoCollection<Document> col;
+    public static final class CursorPage<T> {
+        public final List<T> items; public final String next; public final Long total;
+        public CursorPage(List<T> items, String next, Long total) {
+            this.items = items; this.next = next; this.total = total;
+        }
+    }
+
+    private final MongoCollection<UnifiedBeverage> col;
+    // catalog queries; may be served by a secondary (MONGO_READ_PREFERENCE)
+    private final MongoCollection<UnifiedBeverage> reads;
+    // same reads through the reactive driver, for the non-blocking endpoints
+    private final com.mongodb.reactivestreams.client.MongoCollection<UnifiedBeverage> asyncReads;
+    private final CausalSessions sessions;
+    private final CollectionVersions versions;
+    private final NameIndex names;
+    private final PriceIndex prices;
 
     @Inject
-    public BeverageDaoMongo(MongoClient client) {
+    public BeverageDaoMongo(MongoClient client, CollectionVersions versions, NameIndex names, PriceIndex prices,
+                            com.mongodb.reactivestreams.client.MongoClient reactiveClient, CausalSessions sessions) {
         String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
         MongoDatabase db = client.getDatabase(dbName);
-        this.col = db.getCollection("beverages");
+        this.col = db.getCollection("beverages", UnifiedBeverage.class).withCodecRegistry(Codecs.REGISTRY);
+        this.reads = col.withReadPreference(MongoSettings.READS);
+        this.asyncReads = reactiveClient.getDatabase(dbName).getCollection("beverages", UnifiedBeverage.class)
+                .withCodecRegistry(Codecs.REGISTRY).withReadPreference(MongoSettings.READS);
+        this.sessions = sessions;
+        this.versions = versions;
+        this.names = names;
+        this.prices = prices;
     }
 
     public PagedResult<UnifiedBeverage> findFiltered(
             boolean inStockOnly, String name, Double minPrice, Double maxPrice, int page, int perPage) {
 
-        List<org.bson.conversions.Bson> fs = new ArrayList<>();
+        var filter = filter(inStockOnly, name, minPrice, maxPrice);
+        long total = count(filter);
+
+        int skip = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, (long) (page - 1) * perPage));
+        List<UnifiedBeverage> items = find(filter)
+                .sort(KEYSET_SORT)
+                .skip(skip)
+                .limit(perPage)
+                .into(new ArrayList<>());
+
+        return new PagedResult<>(items, total, page, perPage);
+    }
+
+    /** Non-blocking {@link #findFiltered}: the count and the page are requested concurrently. */
+    public CompletableFuture<PagedResult<UnifiedBeverage>> findFilteredAsync(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice, int page, int perPage) {
+
+        var filter = filter(inStockOnly, name, minPrice, maxPrice);
+        int skip = (int) Math.min(Integer.MAX_VALUE, Math.max(0L, (long) (page - 1) * perPage));
+        return sessions.async(s -> {
+            CompletableFuture<Long> total = Publishers.first(s == null
+                    ? asyncReads.countDocuments(filter)
+                    : majority(asyncReads).countDocuments(s, filter));
+            CompletableFuture<List<UnifiedBeverage>> items = Publishers.toList((s == null
+                    ? asyncReads.find(filter)
+                    : majority(asyncReads).find(s, filter)).sort(KEYSET_SORT).skip(skip).limit(perPage));
+            return total.thenCombine(items, (t, i) -> new PagedResult<>(i, t, page, perPage));
+        });
+    }
+
+    /** Lazy, uncounted variant of {@link #findFiltered} for streaming responses. */
+    public MongoIterable<UnifiedBeverage> iterateFiltered(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice, int skip, int limit) {
+        return find(filter(inStockOnly, name, minPrice, maxPrice))
+                .sort(KEYSET_SORT)
+                .skip(skip)
+                .limit(limit);
+    }
+
+    /**
+     * Keyset variant of {@link #findFiltered}: seeks past the (name, bottleId) of the
+     * cursor instead of skipping, so every page costs the same. Counting is optional.
+     */
+    public CursorPage<UnifiedBeverage> findAfter(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice,
+            BeverageCursor after, int limit, boolean withTotal) {
+
+        var filter = filter(inStockOnly, name, minPrice, maxPrice);
+        Long total = withTotal ? count(filter) : null;
+
+        var seek = after == null ? filter : and(filter, Filters.or(
+                gt("name", after.name),
+                and(eq("name", after.name), gt("bottleId", after.bottleId))
+        ));
+
+        // fetch one extra document to learn whether there is a next page
+        int fetch = limit == Integer.MAX_VALUE ? limit : limit + 1;
+        List<UnifiedBeverage> items = find(seek).sort(KEYSET_SORT).limit(fetch).into(new ArrayList<>());
+
+        String next = null;
+        if (items.size() > limit) {
+            items.remove(items.size() - 1);
+            UnifiedBeverage last = items.get(items.size() - 1);
+            next = new BeverageCursor(last.getName(), last.getBottleId()).encode();
+        }
+        return new CursorPage<>(items, next, total);
+    }
+
+    /**
+     * Resolves name and price filters to bottle ids through the in-memory indexes when they can,
+     * instead of an unanchored regex and a three-way $or over the price fields. The original
+     * predicates, name regex included, stay in the query next to the $in list, so a lagging index
+     * can make a result miss a beverage (one renamed or repriced into the filter) but never
+     * return one that does not match.
+     */
+    private Bson filter(boolean inStockOnly, String name, Double minPrice, Double maxPrice) {
+        return filter(names, prices, inStockOnly, name, minPrice, maxPrice);
+    }
+
+    static Bson filter(NameIndex names, PriceIndex prices,
+                       boolean inStockOnly, String name, Double minPrice, Double maxPrice) {
+        Set<Integer> named = names.resolve(name);
+        if ((minPrice != null || maxPrice != null) && prices.isReady()) {
+            BitSet ids = prices.range(minPrice, maxPrice);
+            if (inStockOnly) ids.and(prices.inStock());
+            if (named != null) {
+                BitSet byName = new BitSet();
+                for (int id : named) byName.set(id);
+                ids.and(byName);
+            }
+            if (ids.cardinality() <= NameIndex.MAX_RESOLVED_IDS) {
+                List<Integer> in = new ArrayList<>(ids.cardinality());
+                for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) in.add(id);
+                return and(in("bottleId", in), buildFilter(inStockOnly, name, minPrice, maxPrice));
+            }
+        }
+        if (named == null) return buildFilter(inStockOnly, name, minPrice, maxPrice);
+        return and(in("bottleId", named), buildFilter(inStockOnly, name, minPrice, maxPrice));
+    }
+
+    static Bson buildFilter(boolean inStockOnly, String name, Double minPrice, Double maxPrice) {
+        List<Bson> fs = new ArrayList<>();
         if (name != null && !name.isBlank()) {
             fs.add(regex("name", Pattern.compile(Pattern.quote(name), Pattern.CASE_INSENSITIVE)));
         }
         if (minPrice != null || maxPrice != null) {
-            var or = new ArrayList<org.bson.conversions.Bson>();
+            var or = new ArrayList<Bson>();
             or.add(and(gteIf("pricePerBottle", minPrice), lteIf("pricePerBottle", maxPrice)));
             or.add(and(gteIf("pricePerCrate",  minPrice), lteIf("pricePerCrate",  maxPrice)));
             or.add(and(gteIf("price",          minPrice), lteIf("price",          maxPrice))); // legacy field fallback
@@ -57,59 +197,76 @@ public class BeverageDaoMongo {
                     gt("totalBottlesInCrates", 0)
             ));
         }
+        return fs.isEmpty() ? new Document() : and(fs);
+    }
 
-        var filter = fs.isEmpty() ? new Document() : and(fs);
-        long total = col.countDocuments(filter);
+    public Optional<UnifiedBeverage> findByBottleId(int bottleId) {
+        return Optional.ofNullable(find(eq("bottleId", bottleId)).first());
+    }
 
-        int skip = Math.max(0, (page - 1) * perPage);
-        List<Document> docs = col.find(filter)
-                .sort(Sorts.ascending("name"))
-                .skip(skip)
-                .limit(perPage)
-                .into(new ArrayList<>());
+    /** Non-blocking {@link #findByBottleId}; call on the request thread. */
+    public CompletableFuture<Optional<UnifiedBeverage>> findByBottleIdAsync(int bottleId) {
+        return sessions.async(s -> Publishers.first((s == null
+                ? asyncReads.find(eq("bottleId", bottleId))
+                : majority(asyncReads).find(s, eq("bottleId", bottleId))).first()))
+                .thenApply(Optional::ofNullable);
+    }
+
+    private FindIterable<UnifiedBeverage> find(Bson filter) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? reads.find(filter) : majority(reads).find(s, filter);
+    }
 
-        List<UnifiedBeverage> items = new ArrayList<>();
-        for (Document d : docs) items.add(toUnified(d));
+    private long count(Bson filter) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? reads.countDocuments(filter) : majority(reads).countDocuments(s, filter);
+    }
 
-        return new PagedResult<>(items, total, page, perPage);
+    // ---------- Read model maintenance (see BeverageProjector) ----------
+    public void upsert(UnifiedBeverage ub) {
+        ClientSession s = CausalSessions.current();
+        Bson filter = eq("bottleId", ub.getBottleId());
+        ReplaceOptions options = new ReplaceOptions().upsert(true);
+        if (s == null) col.replaceOne(filter, ub, options); else majority(col).replaceOne(s, filter, ub, options);
+        versions.bump("beverages");
     }
 
-    public Optional<UnifiedBeverage> findByBottleId(int bottleId) {
-        Document d = col.find(eq("bottleId", bottleId)).first();
-        return Optional.ofNullable(d == null ? null : toUnified(d));
+    public void upsertAll(Collection<UnifiedBeverage> items) {
+        if (items.isEmpty()) return;
+        List<ReplaceOneModel<UnifiedBeverage>> ops = new ArrayList<>(items.size());
+        for (UnifiedBeverage ub : items) {
+            ops.add(new ReplaceOneModel<>(eq("bottleId", ub.getBottleId()), ub, new ReplaceOptions().upsert(true)));
+        }
+        try {
+            ClientSession s = CausalSessions.current();
+            BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+            if (s == null) col.bulkWrite(ops, options); else majority(col).bulkWrite(s, ops, options);
+        } finally {
+            versions.bump("beverages");
+        }
     }
 
-    private static org.bson.conversions.Bson gteIf(String field, Double v) {
+    public void deleteByBottleIds(Collection<Integer> bottleIds) {
+        if (bottleIds.isEmpty()) return;
+        if (deleteMany(in("bottleId", bottleIds)) > 0) versions.bump("beverages");
+    }
+
+    /** Removes every entry whose bottle is not in the given set; used by a full rebuild. */
+    public long deleteAllExcept(Collection<Integer> bottleIds) {
+        long deleted = deleteMany(nin("bottleId", bottleIds));
+        if (deleted > 0) versions.bump("beverages");
+        return deleted;
+    }
+
+    private long deleteMany(Bson filter) {
+        ClientSession s = CausalSessions.current();
+        return (s == null ? col.deleteMany(filter) : majority(col).deleteMany(s, filter)).getDeletedCount();
+    }
+
+    private static Bson gteIf(String field, Double v) {
         return v == null ? null : gte(field, v);
     }
-    private static org.bson.conversions.Bson lteIf(String field, Double v) {
+    private static Bson lteIf(String field, Double v) {
         return v == null ? null : lte(field, v);
     }
-    private static Double num(Object v) {
-        if (v == null) return null;
-        if (v instanceof Decimal128) return ((Decimal128)v).bigDecimalValue().doubleValue();
-        if (v instanceof Number) return ((Number)v).doubleValue();
-        return new BigDecimal(v.toString()).doubleValue();
-    }
-    private static Integer asInt(Object v) { return v == null ? null : Integer.valueOf(v.toString()); }
-    private static boolean asBool(Object v) { return v != null && Boolean.parseBoolean(v.toString()); }
-
-    private UnifiedBeverage toUnified(Document d) {
-        UnifiedBeverage ub = new UnifiedBeverage();
-        ub.setName(d.getString("name"));
-        ub.setBottleId(d.getInteger("bottleId"));
-        ub.setCrateId(d.get("crateId") == null ? null : d.getInteger("crateId"));
-        ub.setVolume(num(d.get("volume")) == null ? 0.0 : num(d.get("volume")));
-        Double ppb = num(d.get("pricePerBottle"));
-        Double ppc = num(d.get("pricePerCrate"));
-        ub.setPricePerBottle(ppb == null ? 0.0 : ppb);
-        ub.setPricePerCrate(ppc);
-        ub.setBottlesInStock(asInt(d.get("bottlesInStock")) == null ? 0 : asInt(d.get("bottlesInStock")));
-        ub.setCratesInStock(asInt(d.get("cratesInStock")));
-        ub.setTotalBottlesInCrates(asInt(d.get("totalBottlesInCrates")));
-        ub.setIsAlcoholic(asBool(d.get("isAlcoholic")));
-        Double vp = num(d.get("volumePercent"));
-        ub.setVolumePercent(vp == null ? 0.0 : vp);
-        return ub;
-    }
 }
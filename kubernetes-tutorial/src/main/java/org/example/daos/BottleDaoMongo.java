@@ -1,93 +1,244 @@
 package org.example.daos;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.model.Sorts;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.example.consistency.CausalSessions;
+import org.example.db.CollectionVersions;
+import org.example.db.EntityCache;
+import org.example.db.IdAllocator;
+import org.example.db.MongoSettings;
+import org.example.db.Publishers;
+import org.example.metrics.Metrics;
+import org.example.db.IndexManager;
+import org.example.daos.codecs.Codecs;
 import org.example.model.Bottle;
+import org.example.search.NameIndex;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 
 import static com.mongodb.client.model.Filters.*;
+import static org.example.consistency.CausalSessions.majority;
 
 @Singleton
 public class BottleDaoMongo {
 
-    private final MongoCollection<Document> col;
+    private static final Bson ALL = new Document();
+
+    private final MongoCollection<Bottle> col;
+    // read-only queries; may be served by a secondary (MONGO_READ_PREFERENCE)
+    private final MongoCollection<Bottle> reads;
+    // same reads through the reactive driver, for the non-blocking endpoints
+    private final com.mongodb.reactivestreams.client.MongoCollection<Bottle> asyncReads;
+    private final CausalSessions sessions;
+    private final IdAllocator ids;
+    private final CollectionVersions versions;
+    private final EntityCache<Integer, Bottle> cache;
+    private final NameIndex names;
 
     @Inject
-    public BottleDaoMongo(MongoClient client) {
+    public BottleDaoMongo(MongoClient client, IdAllocator ids, CollectionVersions versions, NameIndex names,
+                          com.mongodb.reactivestreams.client.MongoClient reactiveClient, CausalSessions sessions) {
         String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
         MongoDatabase db = client.getDatabase(dbName);
-        this.col = db.getCollection("bottles"); // collection name
+        this.ids = ids;
+        this.versions = versions;
+        this.names = names;
+        this.col = db.getCollection("bottles", Bottle.class).withCodecRegistry(Codecs.REGISTRY);
+        this.reads = col.withReadPreference(MongoSettings.READS);
+        this.asyncReads = reactiveClient.getDatabase(dbName).getCollection("bottles", Bottle.class)
+                .withCodecRegistry(Codecs.REGISTRY).withReadPreference(MongoSettings.READS);
+        this.sessions = sessions;
+        this.cache = new EntityCache<>("bottles",
+                Integer.parseInt(System.getenv().getOrDefault("BOTTLE_CACHE_MAX_SIZE", "10000")),
+                Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("BOTTLE_CACHE_TTL_SECONDS", "60"))),
+                BottleDaoMongo::copy);
+        Metrics.registerCache(cache);
+        // another replica's write: cached bottles may predate it, and must not be served under its ETag
+        versions.onChange("bottles", cache::invalidateAll);
     }
 
-    public List<Bottle> findAll() {
-        List<Bottle> out = new ArrayList<>();
-        for (Document d : col.find().sort(Sorts.ascending("id"))) out.add(toBottle(d));
-        return out;
+    /** Every bottle as the primary has it, for rebuilding the read model. */
+    public List<Bottle> findAllFromPrimary() {
+        return find(col, ALL).sort(Sorts.ascending("id")).into(new ArrayList<>());
+    }
+
+    public List<Bottle> findPage(int skip, int limit) {
+        return find(reads, ALL).sort(Sorts.ascending("id")).skip(skip).limit(limit).into(new ArrayList<>());
+    }
+
+    /** Lazy page for streaming; nothing is fetched until the cursor is iterated. */
+    public MongoIterable<Bottle> iteratePage(int skip, int limit) {
+        return find(reads, ALL).sort(Sorts.ascending("id")).skip(skip).limit(limit);
     }
 
     public List<Bottle> findFiltered(Double minPrice, Double maxPrice, String name) {
         List<org.bson.conversions.Bson> fs = new ArrayList<>();
         if (minPrice != null) fs.add(gte("price", minPrice));
         if (maxPrice != null) fs.add(lte("price", maxPrice));
+        // the name index holds every bottle (the beverages read model is keyed by bottle id);
+        // the regex stays next to the $in list, so a lagging index cannot return a renamed bottle
+        Set<Integer> named = names.resolve(name);
+        if (named != null) fs.add(in("id", named));
         if (name != null && !name.isBlank())
             fs.add(regex("name", Pattern.compile(Pattern.quote(name), Pattern.CASE_INSENSITIVE)));
         var filter = fs.isEmpty() ? new Document() : and(fs);
-        List<Bottle> out = new ArrayList<>();
-        for (Document d : col.find(filter).sort(Sorts.ascending("name"))) out.add(toBottle(d));
-        return out;
+        return find(reads, filter).sort(Sorts.ascending("name")).into(new ArrayList<>());
     }
 
     public List<Bottle> findAlcoholic() {
-        return mapAll(col.find(eq("isAlcoholic", true)).sort(Sorts.ascending("name")));
+        return find(reads, eq("isAlcoholic", true)).sort(Sorts.ascending("name")).into(new ArrayList<>());
     }
 
     public List<Bottle> findNonAlcoholic() {
-        return mapAll(col.find(eq("isAlcoholic", false)).sort(Sorts.ascending("name")));
+        return find(reads, eq("isAlcoholic", false)).sort(Sorts.ascending("name")).into(new ArrayList<>());
     }
 
     public List<Bottle> findInStock() {
-        return mapAll(col.find(gt("inStock", 0)).sort(Sorts.ascending("name")));
+        return find(reads, gt("inStock", 0)).sort(Sorts.ascending("name")).into(new ArrayList<>());
     }
 
     public Optional<Bottle> findById(int id) {
-        Document d = col.find(eq("id", id)).first();
-        return Optional.ofNullable(d == null ? null : toBottle(d));
+        return cache.get(id, this::loadById);
     }
 
-    public Optional<Bottle> findByName(String name) {
-        // case-insensitive exact match
-        Document d = col.find(regex("name", "^" + Pattern.quote(name) + "$", "i")).first();
-        return Optional.ofNullable(d == null ? null : toBottle(d));
+    /**
+     * Looks up many bottles at once: cache hits first, the rest in a single $in query.
+     * Misses are read from the primary, since the projector builds the read model from them.
+     */
+    public Map<Integer, Bottle> findByIds(Collection<Integer> ids) {
+        Map<Integer, Bottle> out = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            if (id == null || out.containsKey(id)) continue;
+            Optional<Bottle> cached = cache.getIfPresent(id);
+            if (cached.isPresent()) out.put(id, cached.get());
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            long stamp = cache.beginLoad();
+            for (Bottle b : find(col, in("id", missing))) {
+                cache.putLoaded(b.getId(), b, stamp);
+                out.put(b.getId(), b);
+            }
+        }
+        return out;
     }
 
-    public long count() {
-        return col.countDocuments();
+    /**
+     * Bottles as the primary has them now, bypassing the cache, which may hold another replica's
+     * older write for up to its TTL. Used by the projector; the results refresh the cache.
+     */
+    public Map<Integer, Bottle> findByIdsFromPrimary(Collection<Integer> ids) {
+        Map<Integer, Bottle> out = new HashMap<>();
+        if (ids.isEmpty()) return out;
+        long stamp = cache.beginLoad();
+        for (Bottle b : find(col, in("id", ids))) {
+            cache.putLoaded(b.getId(), b, stamp);
+            out.put(b.getId(), b);
+        }
+        return out;
+    }
+
+    // the cache only ever holds primary reads; the projector and writes build on it
+    private Optional<Bottle> loadById(int id) {
+        return Optional.ofNullable(find(col, eq("id", id)).first());
+    }
+
+    /**
+     * The bottle and the ids of its nearest neighbours in one round trip. Read from a secondary,
+     * so the result is not cached.
+     */
+    public Optional<Neighbours<Bottle>> findWithNeighbours(int id) {
+        return Optional.ofNullable(Neighbours.of(id, aggregate(Neighbours.pipeline("bottles", id, List.of()), Bottle.class), Bottle::getId));
+    }
+
+    /** Non-blocking {@link #findWithNeighbours}; call on the request thread. */
+    public CompletableFuture<Optional<Neighbours<Bottle>>> findWithNeighboursAsync(int id) {
+        List<Bson> pipeline = Neighbours.pipeline("bottles", id, List.of());
+        return sessions.async(s -> Publishers.toList(s == null
+                        ? asyncReads.aggregate(pipeline, Bottle.class)
+                        : majority(asyncReads).aggregate(s, pipeline, Bottle.class)))
+                .thenApply(rows -> Optional.ofNullable(Neighbours.of(id, rows, Bottle::getId)));
+    }
+
+    public Optional<Bottle> findByName(String name) {
+        // case-insensitive exact match, served by the name_ci collation index
+        return Optional.ofNullable(find(reads, eq("name", name)).collation(IndexManager.NAME_COLLATION).first());
     }
 
     public int nextId() {
-        Document d = col.find().sort(Sorts.descending("id")).first();
-        return d == null ? 1 : d.getInteger("id") + 1;
+        return ids.next("bottles");
     }
 
     public Bottle insert(Bottle b) {
         if (b.getId() == 0) b.setId(nextId());
-        col.insertOne(toDoc(b));
+        ClientSession s = CausalSessions.current();
+        if (s == null) col.insertOne(b); else majority(col).insertOne(s, b);
+        // cache first: once the version moves, its ETag may be served from the cache
+        cache.put(b.getId(), b);
+        versions.bump("bottles");
         return b;
     }
 
+    /**
+     * Inserts a batch with one unordered bulkWrite, assigning ids to bottles that have none.
+     * Returns the error message for each batch index that failed; all others were inserted.
+     */
+    public Map<Integer, String> insertAll(List<Bottle> bottles) {
+        List<InsertOneModel<Bottle>> ops = new ArrayList<>(bottles.size());
+        for (Bottle b : bottles) {
+            if (b.getId() == 0) b.setId(nextId());
+            ops.add(new InsertOneModel<>(b));
+        }
+        Map<Integer, String> failed = new HashMap<>();
+        if (ops.isEmpty()) return failed;
+        try {
+            bulkWrite(ops);
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError err : e.getWriteErrors()) failed.put(err.getIndex(), err.getMessage());
+        }
+        for (int i = 0; i < bottles.size(); i++) {
+            if (!failed.containsKey(i)) cache.put(bottles.get(i).getId(), bottles.get(i));
+        }
+        if (failed.size() < ops.size()) versions.bump("bottles");
+        return failed;
+    }
+
     public boolean updateById(int id, Bottle updated) {
-        var res = col.updateOne(eq("id", id), Updates.combine(
+        ClientSession s = CausalSessions.current();
+        Bson filter = eq("id", id);
+        Bson update = Updates.combine(
                 Updates.set("name", updated.getName()),
                 Updates.set("volume", updated.getVolume()),
                 Updates.set("isAlcoholic", updated.getIsAlcoholic()),
@@ -95,42 +246,98 @@ public class BottleDaoMongo {
                 Updates.set("price", updated.getPrice()),
                 Updates.set("supplier", updated.getSupplier()),
                 Updates.set("inStock", updated.getInStock())
-        ));
-        return res.getMatchedCount() > 0;
+        );
+        var res = s == null ? col.updateOne(filter, update) : majority(col).updateOne(s, filter, update);
+        if (res.getMatchedCount() == 0) {
+            cache.invalidate(id);
+            return false;
+        }
+        cache.put(id, new Bottle(id, updated.getName(), updated.getVolume(), updated.getIsAlcoholic(),
+                updated.getVolumePercent(), updated.getPrice(), updated.getSupplier(), updated.getInStock()));
+        versions.bump("bottles");
+        return true;
+    }
+
+    /**
+     * Adds {@code delta} to the stock in a single findOneAndUpdate. A negative delta only
+     * matches while enough stock is left, so concurrent adjustments can never oversell.
+     * Empty when the id is unknown or the guard rejected the change.
+     */
+    public Optional<Bottle> adjustStock(int id, int delta) {
+        ClientSession s = CausalSessions.current();
+        Bson filter = stockGuard(id, delta);
+        Bson update = Updates.inc("inStock", delta);
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        Bottle b = s == null ? col.findOneAndUpdate(filter, update, options) : majority(col).findOneAndUpdate(s, filter, update, options);
+        if (b == null) return Optional.empty();
+        cache.put(id, b);
+        versions.bump("bottles");
+        return Optional.of(b);
+    }
+
+    /** Applies all adjustments in one unordered bulkWrite; returns how many were applied. */
+    public int adjustStockAll(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) return 0;
+        List<UpdateOneModel<Bottle>> ops = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> ops.add(new UpdateOneModel<>(stockGuard(id, delta), Updates.inc("inStock", delta))));
+        int applied;
+        try {
+            applied = bulkWrite(ops).getMatchedCount();
+        } finally {
+            for (Integer id : deltas.keySet()) cache.invalidate(id);
+            versions.bump("bottles");
+        }
+        return applied;
+    }
+
+    private static Bson stockGuard(int id, int delta) {
+        // negated as a long, so even Integer.MIN_VALUE cannot wrap into a guard that always passes
+        return delta < 0 ? and(eq("id", id), gte("inStock", -(long) delta)) : eq("id", id);
+    }
+
+    /** Uncached existence check, used to tell a missing id from a rejected write. */
+    public boolean exists(int id) {
+        return count(col, eq("id", id), new CountOptions().limit(1)) > 0;
     }
 
     public boolean deleteById(int id) {
-        return col.deleteOne(eq("id", id)).getDeletedCount() > 0;
-    }
-
-    // ---------- Mapping ----------
-    private Bottle toBottle(Document d) {
-        return new Bottle(
-                d.getInteger("id"),
-                d.getString("name"),
-                d.getDouble("volume"),
-                d.getBoolean("isAlcoholic", false),
-                d.getDouble("volumePercent") == null ? 0.0 : d.getDouble("volumePercent"),
-                d.getDouble("price"),
-                d.getString("supplier"),
-                d.getInteger("inStock") == null ? 0 : d.getInteger("inStock")
-        );
+        ClientSession s = CausalSessions.current();
+        boolean deleted;
+        try {
+            deleted = (s == null ? col.deleteOne(eq("id", id)) : majority(col).deleteOne(s, eq("id", id))).getDeletedCount() > 0;
+        } finally {
+            // after the delete, so a read racing it cannot re-cache the bottle
+            cache.invalidate(id);
+        }
+        if (deleted) versions.bump("bottles");
+        return deleted;
     }
 
-    private Document toDoc(Bottle b) {
-        return new Document("id", b.getId())
-                .append("name", b.getName())
-                .append("volume", b.getVolume())
-                .append("isAlcoholic", b.getIsAlcoholic())
-                .append("volumePercent", b.getVolumePercent())
-                .append("price", b.getPrice())
-                .append("supplier", b.getSupplier())
-                .append("inStock", b.getInStock());
+    // the cache copies on put and get, so it never shares instances with callers, who may modify theirs
+    private static Bottle copy(Bottle b) {
+        return new Bottle(b.getId(), b.getName(), b.getVolume(), b.getIsAlcoholic(),
+                b.getVolumePercent(), b.getPrice(), b.getSupplier(), b.getInStock());
     }
 
-    private List<Bottle> mapAll(Iterable<Document> docs) {
-        List<Bottle> out = new ArrayList<>();
-        for (Document d : docs) out.add(toBottle(d));
-        return out;
+    // ---------- Session-aware access: the employee's causal session when there is one ----------
+    private FindIterable<Bottle> find(MongoCollection<Bottle> c, Bson filter) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? c.find(filter) : majority(c).find(s, filter);
+    }
+
+    private <R> AggregateIterable<R> aggregate(List<Bson> pipeline, Class<R> type) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? reads.aggregate(pipeline, type) : majority(reads).aggregate(s, pipeline, type);
+    }
+
+    private long count(MongoCollection<Bottle> c, Bson filter, CountOptions options) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? c.countDocuments(filter, options) : majority(c).countDocuments(s, filter, options);
+    }
+
+    private BulkWriteResult bulkWrite(List<? extends WriteModel<Bottle>> ops) {
+        ClientSession s = CausalSessions.current();
+        BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+        return s == null ? col.bulkWrite(ops, options) : majority(col).bulkWrite(s, ops, options);
     }
 }
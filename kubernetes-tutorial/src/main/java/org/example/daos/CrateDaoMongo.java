@@ -1,20 +1,54 @@
 package org.example.daos;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.Updates;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.example.consistency.CausalSessions;
+import org.example.daos.codecs.Codecs;
+import org.example.db.CollectionVersions;
+import org.example.db.EntityCache;
+import org.example.db.IdAllocator;
+import org.example.db.MongoSettings;
+import org.example.db.Publishers;
+import org.example.metrics.Metrics;
+import org.example.model.Crate;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static com.mongodb.client.model.Filters.*;
+import static org.example.consistency.CausalSessions.majority;
 
 @Singleton
 public class CrateDaoMongo {
@@ -33,83 +67,262 @@ public class CrateDaoMongo {
         }
     }
 
-    private final MongoCollection<Document> col;
+    private final MongoCollection<CrateRecord> col;
+    // read-only queries; may be served by a secondary (MONGO_READ_PREFERENCE)
+    private final MongoCollection<CrateRecord> reads;
+    // same reads through the reactive driver, for the non-blocking endpoints
+    private final com.mongodb.reactivestreams.client.MongoCollection<CrateRecord> asyncReads;
+    private final CausalSessions sessions;
+    private final IdAllocator ids;
+    private final CollectionVersions versions;
+    private final EntityCache<Integer, CrateRecord> cache;
 
     @Inject
-    public CrateDaoMongo(MongoClient client) {
+    public CrateDaoMongo(MongoClient client, IdAllocator ids, CollectionVersions versions,
+                         com.mongodb.reactivestreams.client.MongoClient reactiveClient, CausalSessions sessions) {
         String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
         MongoDatabase db = client.getDatabase(dbName);
-        this.col = db.getCollection("crates");
+        this.ids = ids;
+        this.versions = versions;
+        this.col = db.getCollection("crates", CrateRecord.class).withCodecRegistry(Codecs.REGISTRY);
+        this.reads = col.withReadPreference(MongoSettings.READS);
+        this.asyncReads = reactiveClient.getDatabase(dbName).getCollection("crates", CrateRecord.class)
+                .withCodecRegistry(Codecs.REGISTRY).withReadPreference(MongoSettings.READS);
+        this.sessions = sessions;
+        this.cache = new EntityCache<>("crates",
+                Integer.parseInt(System.getenv().getOrDefault("CRATE_CACHE_MAX_SIZE", "10000")),
+                Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("CRATE_CACHE_TTL_SECONDS", "60"))),
+                CrateDaoMongo::copy);
+        Metrics.registerCache(cache);
+        versions.onChange("crates", cache::invalidateAll);
     }
 
+    // The *Record lookups feed the projector and read-modify-write flows, so they read the primary.
     public List<CrateRecord> findAllRecords() {
-        List<CrateRecord> out = new ArrayList<>();
-        for (Document d : col.find().sort(Sorts.ascending("id"))) out.add(toRec(d));
-        return out;
+        return find(col, new Document()).sort(Sorts.ascending("id")).into(new ArrayList<>());
     }
 
     public Optional<CrateRecord> findByIdRecord(int id) {
-        Document d = col.find(eq("id", id)).first();
-        return Optional.ofNullable(d == null ? null : toRec(d));
+        return cache.get(id, this::loadByIdRecord);
+    }
+
+    private Optional<CrateRecord> loadByIdRecord(int id) {
+        return Optional.ofNullable(find(col, eq("id", id)).first());
     }
 
     public Optional<CrateRecord> findByBottleIdRecord(int bottleId) {
-        Document d = col.find(eq("bottleId", bottleId)).first();
-        return Optional.ofNullable(d == null ? null : toRec(d));
+        return Optional.ofNullable(find(reads, eq("bottleId", bottleId)).first());
+    }
+
+    public List<CrateRecord> findByBottleIdsRecords(Collection<Integer> bottleIds) {
+        return find(col, in("bottleId", bottleIds)).sort(Sorts.ascending("id")).into(new ArrayList<>());
+    }
+
+    /** Distinct bottle ids referenced by the given crates, fetched with a bottleId-only projection. */
+    public Set<Integer> findBottleIdsOf(Collection<Integer> crateIds) {
+        Set<Integer> out = new HashSet<>();
+        for (CrateRecord r : find(col, in("id", crateIds)).projection(Projections.include("bottleId"))) {
+            out.add(r.bottleId);
+        }
+        return out;
+    }
+
+    // ---------- Crates joined with their bottle in one pipeline ----------
+    private static final Bson BY_ID = Sorts.ascending("id");
+    private static final Bson JOIN_BOTTLE = Aggregates.lookup("bottles", "bottleId", "id", "bottle");
+    // a crate whose bottle is gone has an empty "bottle" array and unwinds to nothing
+    private static final Bson UNWIND_BOTTLE = Aggregates.unwind("$bottle");
+
+    public List<Crate> findAllCrates() {
+        return joined(null, BY_ID, 0, Integer.MAX_VALUE).into(new ArrayList<>());
     }
 
-    public List<CrateRecord> findByPriceRangeRecords(Double minPrice, Double maxPrice) {
-        List<CrateRecord> out = new ArrayList<>();
-        List<org.bson.conversions.Bson> fs = new ArrayList<>();
+    /** A page of crates joined with their bottles, read without blocking; call on the request thread. */
+    public CompletableFuture<List<Crate>> findCratePageAsync(int skip, int limit) {
+        List<Bson> pipeline = joinPipeline(null, BY_ID, skip, limit);
+        return sessions.async(s -> Publishers.toList(s == null
+                ? asyncReads.aggregate(pipeline, Crate.class)
+                : majority(asyncReads).aggregate(s, pipeline, Crate.class)));
+    }
+
+    /** Lazy page for streaming; nothing is fetched until the cursor is iterated. */
+    public MongoIterable<Crate> iterateCratePage(int skip, int limit) {
+        return joined(null, BY_ID, skip, limit);
+    }
+
+    /**
+     * Crates within the price range, sorted by price. With a bottle id only that bottle's
+     * first crate is considered, matching the by-name lookup.
+     */
+    public List<Crate> findCratesFiltered(Integer bottleId, Double minPrice, Double maxPrice) {
+        List<Bson> fs = new ArrayList<>();
+        if (bottleId != null) fs.add(eq("bottleId", bottleId));
         if (minPrice != null) fs.add(gte("price", minPrice));
         if (maxPrice != null) fs.add(lte("price", maxPrice));
-        var filter = fs.isEmpty() ? new Document() : and(fs);
-        for (Document d : col.find(filter).sort(Sorts.ascending("price"))) out.add(toRec(d));
-        return out;
+        Bson match = fs.isEmpty() ? null : and(fs);
+        if (bottleId != null) return joined(match, BY_ID, 0, 1).into(new ArrayList<>());
+        return joined(match, Sorts.ascending("price"), 0, Integer.MAX_VALUE).into(new ArrayList<>());
     }
 
-    public long count() { return col.countDocuments(); }
+    /** The crate and the ids of its nearest non-orphaned neighbours in one round trip. */
+    public Optional<Neighbours<Crate>> findWithNeighbours(int id) {
+        List<Bson> pipeline = Neighbours.pipeline("crates", id, List.of(JOIN_BOTTLE, UNWIND_BOTTLE));
+        return Optional.ofNullable(Neighbours.of(id, aggregate(pipeline), Crate::getId));
+    }
+
+    private AggregateIterable<Crate> joined(Bson match, Bson sort, int skip, int limit) {
+        return aggregate(joinPipeline(match, sort, skip, limit));
+    }
+
+    /** Paging happens before the $lookup so only the crates of the page are joined. */
+    private static List<Bson> joinPipeline(Bson match, Bson sort, int skip, int limit) {
+        List<Bson> pipeline = new ArrayList<>(6);
+        if (match != null) pipeline.add(Aggregates.match(match));
+        pipeline.add(Aggregates.sort(sort));
+        if (skip > 0) pipeline.add(Aggregates.skip(skip));
+        if (limit < Integer.MAX_VALUE) pipeline.add(Aggregates.limit(limit));
+        pipeline.add(JOIN_BOTTLE);
+        pipeline.add(UNWIND_BOTTLE);
+        return pipeline;
+    }
 
     public int nextId() {
-        Document d = col.find().sort(Sorts.descending("id")).first();
-        return d == null ? 1 : d.getInteger("id") + 1;
+        return ids.next("crates");
     }
 
     public CrateRecord insertRecord(CrateRecord r) {
         if (r.id == 0) r.id = nextId();
-        col.insertOne(toDoc(r));
+        ClientSession s = CausalSessions.current();
+        if (s == null) col.insertOne(r); else majority(col).insertOne(s, r);
+        // cache first: once the version moves, its ETag may be served from the cache
+        cache.put(r.id, r);
+        versions.bump("crates");
         return r;
     }
 
+    /**
+     * Inserts a batch with one unordered bulkWrite, assigning ids to records that have none.
+     * Returns the error message for each batch index that failed; all others were inserted.
+     */
+    public Map<Integer, String> insertAllRecords(List<CrateRecord> records) {
+        List<InsertOneModel<CrateRecord>> ops = new ArrayList<>(records.size());
+        for (CrateRecord r : records) {
+            if (r.id == 0) r.id = nextId();
+            ops.add(new InsertOneModel<>(r));
+        }
+        Map<Integer, String> failed = new HashMap<>();
+        if (ops.isEmpty()) return failed;
+        try {
+            bulkWrite(ops);
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError err : e.getWriteErrors()) failed.put(err.getIndex(), err.getMessage());
+        }
+        for (int i = 0; i < records.size(); i++) {
+            CrateRecord r = records.get(i);
+            if (!failed.containsKey(i)) cache.put(r.id, r);
+        }
+        if (failed.size() < ops.size()) versions.bump("crates");
+        return failed;
+    }
+
     public boolean updateByIdRecord(int id, CrateRecord r) {
-        var res = col.updateOne(eq("id", id), Updates.combine(
+        ClientSession s = CausalSessions.current();
+        Bson filter = eq("id", id);
+        Bson update = Updates.combine(
                 Updates.set("bottleId", r.bottleId),
                 Updates.set("bottlesPerCrate", r.bottlesPerCrate),
                 Updates.set("price", r.price),
                 Updates.set("inStock", r.inStock)
-        ));
-        return res.getMatchedCount() > 0;
+        );
+        var res = s == null ? col.updateOne(filter, update) : majority(col).updateOne(s, filter, update);
+        if (res.getMatchedCount() == 0) {
+            cache.invalidate(id);
+            return false;
+        }
+        cache.put(id, new CrateRecord(id, r.bottleId, r.bottlesPerCrate, r.price, r.inStock));
+        versions.bump("crates");
+        return true;
+    }
+
+    /**
+     * Adds {@code delta} to the stock in a single findOneAndUpdate. A negative delta only
+     * matches while enough stock is left, so concurrent adjustments can never oversell.
+     * Empty when the id is unknown or the guard rejected the change.
+     */
+    public Optional<CrateRecord> adjustStock(int id, int delta) {
+        ClientSession s = CausalSessions.current();
+        Bson filter = stockGuard(id, delta);
+        Bson update = Updates.inc("inStock", delta);
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+        CrateRecord r = s == null ? col.findOneAndUpdate(filter, update, options) : majority(col).findOneAndUpdate(s, filter, update, options);
+        if (r == null) return Optional.empty();
+        cache.put(id, r);
+        versions.bump("crates");
+        return Optional.of(r);
+    }
+
+    /** Applies all adjustments in one unordered bulkWrite; returns how many were applied. */
+    public int adjustStockAll(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) return 0;
+        List<UpdateOneModel<CrateRecord>> ops = new ArrayList<>(deltas.size());
+        deltas.forEach((id, delta) -> ops.add(new UpdateOneModel<>(stockGuard(id, delta), Updates.inc("inStock", delta))));
+        int applied;
+        try {
+            applied = bulkWrite(ops).getMatchedCount();
+        } finally {
+            for (Integer id : deltas.keySet()) cache.invalidate(id);
+            versions.bump("crates");
+        }
+        return applied;
+    }
+
+    private static Bson stockGuard(int id, int delta) {
+        // negated as a long, so even Integer.MIN_VALUE cannot wrap into a guard that always passes
+        return delta < 0 ? and(eq("id", id), gte("inStock", -(long) delta)) : eq("id", id);
+    }
+
+    /** Uncached existence check, used to tell a missing id from a rejected write. */
+    public boolean exists(int id) {
+        return count(col, eq("id", id), new CountOptions().limit(1)) > 0;
     }
 
     public boolean deleteById(int id) {
-        return col.deleteOne(eq("id", id)).getDeletedCount() > 0;
+        ClientSession s = CausalSessions.current();
+        boolean deleted;
+        try {
+            deleted = (s == null ? col.deleteOne(eq("id", id)) : majority(col).deleteOne(s, eq("id", id))).getDeletedCount() > 0;
+        } finally {
+            // after the delete, so a read racing it cannot re-cache the crate
+            cache.invalidate(id);
+        }
+        if (deleted) versions.bump("crates");
+        return deleted;
     }
 
-    private CrateRecord toRec(Document d) {
-        return new CrateRecord(
-                d.getInteger("id"),
-                d.getInteger("bottleId"),
-                d.getInteger("bottlesPerCrate"),
-                d.getDouble("price"),
-                d.getInteger("inStock") == null ? 0 : d.getInteger("inStock")
-        );
+    // the cache copies on put and get, so it never shares instances with callers, who may modify theirs
+    private static CrateRecord copy(CrateRecord r) {
+        return new CrateRecord(r.id, r.bottleId, r.bottlesPerCrate, r.price, r.inStock);
+    }
+
+    // ---------- Session-aware access: the employee's causal session when there is one ----------
+    private FindIterable<CrateRecord> find(MongoCollection<CrateRecord> c, Bson filter) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? c.find(filter) : majority(c).find(s, filter);
+    }
+
+    private AggregateIterable<Crate> aggregate(List<Bson> pipeline) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? reads.aggregate(pipeline, Crate.class) : majority(reads).aggregate(s, pipeline, Crate.class);
+    }
+
+    private long count(MongoCollection<CrateRecord> c, Bson filter, CountOptions options) {
+        ClientSession s = CausalSessions.current();
+        return s == null ? c.countDocuments(filter, options) : majority(c).countDocuments(s, filter, options);
     }
 
-    private Document toDoc(CrateRecord r) {
-        return new Document("id", r.id)
-                .append("bottleId", r.bottleId)
-                .append("bottlesPerCrate", r.bottlesPerCrate)
-                .append("price", r.price)
-                .append("inStock", r.inStock);
+    private BulkWriteResult bulkWrite(List<? extends WriteModel<CrateRecord>> ops) {
+        ClientSession s = CausalSessions.current();
+        BulkWriteOptions options = new BulkWriteOptions().ordered(false);
+        return s == null ? col.bulkWrite(ops, options) : majority(col).bulkWrite(s, ops, options);
     }
 }
@@ -0,0 +1,65 @@
+package org.example.daos;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import static com.mongodb.client.model.Filters.*;
+
+/**
+ * An item together with the ids of its nearest existing predecessor and successor,
+ * as returned by the DAOs' findWithNeighbours. Prev/next are null at either end.
+ */
+public class Neighbours<T> {
+    public final T item;
+    public final Integer prevId;
+    public final Integer nextId;
+
+    public Neighbours(T item, Integer prevId, Integer nextId) {
+        this.item = item; this.prevId = prevId; this.nextId = nextId;
+    }
+
+    /**
+     * One pipeline for the item and both neighbours: the item by id, then $unionWith two
+     * index-backed seeks (id below, descending and id above, ascending, one document each).
+     * {@code join} is applied to every branch before its limit, so neighbours that the item
+     * endpoint would 404 on (e.g. orphaned crates) are skipped.
+     */
+    static List<Bson> pipeline(String collection, int id, List<Bson> join) {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.match(eq("id", id)));
+        pipeline.addAll(join);
+        pipeline.add(Aggregates.limit(1));
+        pipeline.add(Aggregates.unionWith(collection, seek(lt("id", id), Sorts.descending("id"), join)));
+        pipeline.add(Aggregates.unionWith(collection, seek(gt("id", id), Sorts.ascending("id"), join)));
+        return pipeline;
+    }
+
+    private static List<Bson> seek(Bson range, Bson sort, List<Bson> join) {
+        List<Bson> p = new ArrayList<>();
+        p.add(Aggregates.match(range));
+        p.add(Aggregates.sort(sort));
+        p.addAll(join);
+        p.add(Aggregates.limit(1));
+        p.add(Aggregates.project(Projections.include("id")));
+        return p;
+    }
+
+    /** Sorts the (at most three) pipeline results into item, prev and next; null if the item is missing. */
+    static <T> Neighbours<T> of(int id, Iterable<T> results, ToIntFunction<T> idOf) {
+        T item = null;
+        Integer prev = null, next = null;
+        for (T t : results) {
+            int other = idOf.applyAsInt(t);
+            if (other == id) item = t;
+            else if (other < id) prev = other;
+            else next = other;
+        }
+        return item == null ? null : new Neighbours<>(item, prev, next);
+    }
+}
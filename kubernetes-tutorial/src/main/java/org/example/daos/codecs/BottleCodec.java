@@ -0,0 +1,62 @@
+package org.example.daos.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.example.model.Bottle;
+
+/** Maps "bottles" documents to {@link Bottle} and back without an intermediate Document. */
+public class BottleCodec implements Codec<Bottle> {
+
+    @Override
+    public Bottle decode(BsonReader reader, DecoderContext ctx) {
+        int id = 0, inStock = 0;
+        String name = null, supplier = null;
+        double volume = 0.0, volumePercent = 0.0, price = 0.0;
+        boolean isAlcoholic = false;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id" -> id = BsonFields.readInt(reader, 0);
+                case "name" -> name = BsonFields.readString(reader);
+                case "volume" -> volume = BsonFields.readDouble(reader, 0.0);
+                case "isAlcoholic" -> isAlcoholic = BsonFields.readBoolean(reader);
+                case "volumePercent" -> volumePercent = BsonFields.readDouble(reader, 0.0);
+                case "price" -> price = BsonFields.readDouble(reader, 0.0);
+                case "supplier" -> supplier = BsonFields.readString(reader);
+                case "inStock" -> inStock = BsonFields.readInt(reader, 0);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Bottle(id, name, volume, isAlcoholic, volumePercent, price, supplier, inStock);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Bottle b, EncoderContext ctx) {
+        writer.writeStartDocument();
+        writer.writeInt32("id", b.getId());
+        writeString(writer, "name", b.getName());
+        writer.writeDouble("volume", b.getVolume());
+        writer.writeBoolean("isAlcoholic", b.getIsAlcoholic());
+        writer.writeDouble("volumePercent", b.getVolumePercent());
+        writer.writeDouble("price", b.getPrice());
+        writeString(writer, "supplier", b.getSupplier());
+        writer.writeInt32("inStock", b.getInStock());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Bottle> getEncoderClass() {
+        return Bottle.class;
+    }
+
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value == null) writer.writeNull(name);
+        else writer.writeString(name, value);
+    }
+}
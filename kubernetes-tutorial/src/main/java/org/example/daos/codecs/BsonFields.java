@@ -0,0 +1,71 @@
+package org.example.daos.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+
+/**
+ * Lenient field readers for the codecs. Older documents (e.g. the first beverages import)
+ * stored numbers as strings, Decimal128 or the "wrong" integer width; these read any of
+ * them straight off the reader as primitives. Null and missing values map to the default.
+ */
+final class BsonFields {
+
+    private BsonFields() {}
+
+    static double readDouble(BsonReader reader, double ifNull) {
+        return switch (reader.getCurrentBsonType()) {
+            case DOUBLE -> reader.readDouble();
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            case DECIMAL128 -> reader.readDecimal128().bigDecimalValue().doubleValue();
+            case STRING -> Double.parseDouble(reader.readString());
+            default -> skip(reader, ifNull);
+        };
+    }
+
+    /** Like {@link #readDouble} but keeps null apart from zero. */
+    static Double readNullableDouble(BsonReader reader) {
+        if (isNull(reader)) return null;
+        return readDouble(reader, 0.0);
+    }
+
+    static int readInt(BsonReader reader, int ifNull) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> (int) reader.readInt64();
+            case DOUBLE -> (int) reader.readDouble();
+            case DECIMAL128 -> reader.readDecimal128().bigDecimalValue().intValue();
+            case STRING -> Integer.parseInt(reader.readString().trim());
+            default -> skip(reader, ifNull);
+        };
+    }
+
+    static Integer readNullableInt(BsonReader reader) {
+        if (isNull(reader)) return null;
+        return readInt(reader, 0);
+    }
+
+    static boolean readBoolean(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case BOOLEAN -> reader.readBoolean();
+            case STRING -> Boolean.parseBoolean(reader.readString());
+            default -> skip(reader, false);
+        };
+    }
+
+    static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) return reader.readString();
+        return skip(reader, null);
+    }
+
+    private static boolean isNull(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.NULL) return false;
+        reader.readNull();
+        return true;
+    }
+
+    private static <T> T skip(BsonReader reader, T value) {
+        reader.skipValue();
+        return value;
+    }
+}
@@ -0,0 +1,17 @@
+package org.example.daos.codecs;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/** The driver's default codecs plus the entity codecs used by the typed DAO collections. */
+public final class Codecs {
+
+    private static final BottleCodec BOTTLE = new BottleCodec();
+
+    public static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(BOTTLE, new CrateRecordCodec(), new CrateCodec(BOTTLE), new UnifiedBeverageCodec()),
+            MongoClientSettings.getDefaultCodecRegistry());
+
+    private Codecs() {}
+}
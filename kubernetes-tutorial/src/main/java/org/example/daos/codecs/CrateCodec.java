@@ -0,0 +1,65 @@
+package org.example.daos.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.example.model.Bottle;
+import org.example.model.Crate;
+
+/**
+ * Builds {@link Crate} domain objects from a crate document with its bottle embedded
+ * under "bottle", the shape produced by the $lookup/$unwind read path in CrateDaoMongo.
+ */
+public class CrateCodec implements Codec<Crate> {
+
+    private final BottleCodec bottleCodec;
+
+    public CrateCodec(BottleCodec bottleCodec) {
+        this.bottleCodec = bottleCodec;
+    }
+
+    @Override
+    public Crate decode(BsonReader reader, DecoderContext ctx) {
+        Crate c = new Crate();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id" -> c.setId(BsonFields.readInt(reader, 0));
+                case "bottlesPerCrate" -> c.setNoOfBottles(BsonFields.readInt(reader, 0));
+                case "price" -> c.setPrice(BsonFields.readDouble(reader, 0.0));
+                case "inStock" -> c.setInStock(BsonFields.readInt(reader, 0));
+                case "bottle" -> {
+                    if (reader.getCurrentBsonType() == BsonType.DOCUMENT) c.setBottle(bottleCodec.decode(reader, ctx));
+                    else reader.skipValue();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return c;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Crate c, EncoderContext ctx) {
+        Bottle b = c.getBottle();
+        writer.writeStartDocument();
+        writer.writeInt32("id", c.getId());
+        if (b != null) writer.writeInt32("bottleId", b.getId());
+        writer.writeInt32("bottlesPerCrate", c.getNoOfBottles());
+        writer.writeDouble("price", c.getPrice());
+        writer.writeInt32("inStock", c.getInStock());
+        if (b != null) {
+            writer.writeName("bottle");
+            ctx.encodeWithChildContext(bottleCodec, writer, b);
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Crate> getEncoderClass() {
+        return Crate.class;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.daos.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.example.daos.CrateDaoMongo.CrateRecord;
+
+/** Maps "crates" documents to {@link CrateRecord} and back without an intermediate Document. */
+public class CrateRecordCodec implements Codec<CrateRecord> {
+
+    @Override
+    public CrateRecord decode(BsonReader reader, DecoderContext ctx) {
+        CrateRecord r = new CrateRecord();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "id" -> r.id = BsonFields.readInt(reader, 0);
+                case "bottleId" -> r.bottleId = BsonFields.readInt(reader, 0);
+                case "bottlesPerCrate" -> r.bottlesPerCrate = BsonFields.readInt(reader, 0);
+                case "price" -> r.price = BsonFields.readDouble(reader, 0.0);
+                case "inStock" -> r.inStock = BsonFields.readInt(reader, 0);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return r;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, CrateRecord r, EncoderContext ctx) {
+        writer.writeStartDocument();
+        writer.writeInt32("id", r.id);
+        writer.writeInt32("bottleId", r.bottleId);
+        writer.writeInt32("bottlesPerCrate", r.bottlesPerCrate);
+        writer.writeDouble("price", r.price);
+        writer.writeInt32("inStock", r.inStock);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<CrateRecord> getEncoderClass() {
+        return CrateRecord.class;
+    }
+}
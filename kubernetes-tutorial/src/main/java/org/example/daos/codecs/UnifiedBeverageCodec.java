@@ -0,0 +1,77 @@
+package org.example.daos.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+
+/**
+ * Maps the "beverages" read model to {@link UnifiedBeverage} and back. Decoding accepts
+ * the legacy string/Decimal128 number shapes and the legacy "price" field; encoding always
+ * writes doubles and ints.
+ */
+public class UnifiedBeverageCodec implements Codec<UnifiedBeverage> {
+
+    @Override
+    public UnifiedBeverage decode(BsonReader reader, DecoderContext ctx) {
+        UnifiedBeverage ub = new UnifiedBeverage();
+        boolean hasPricePerBottle = false;
+        Double legacyPrice = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "name" -> ub.setName(BsonFields.readString(reader));
+                case "bottleId" -> ub.setBottleId(BsonFields.readInt(reader, 0));
+                case "crateId" -> ub.setCrateId(BsonFields.readNullableInt(reader));
+                case "volume" -> ub.setVolume(BsonFields.readDouble(reader, 0.0));
+                case "pricePerBottle" -> {
+                    ub.setPricePerBottle(BsonFields.readDouble(reader, 0.0));
+                    hasPricePerBottle = true;
+                }
+                case "price" -> legacyPrice = BsonFields.readNullableDouble(reader);
+                case "pricePerCrate" -> ub.setPricePerCrate(BsonFields.readNullableDouble(reader));
+                case "bottlesInStock" -> ub.setBottlesInStock(BsonFields.readInt(reader, 0));
+                case "cratesInStock" -> ub.setCratesInStock(BsonFields.readNullableInt(reader));
+                case "totalBottlesInCrates" -> ub.setTotalBottlesInCrates(BsonFields.readNullableInt(reader));
+                case "isAlcoholic" -> ub.setIsAlcoholic(BsonFields.readBoolean(reader));
+                case "volumePercent" -> ub.setVolumePercent(BsonFields.readDouble(reader, 0.0));
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        // entries written before pricePerBottle existed only carry "price"
+        if (!hasPricePerBottle && legacyPrice != null) ub.setPricePerBottle(legacyPrice);
+        return ub;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, UnifiedBeverage ub, EncoderContext ctx) {
+        writer.writeStartDocument();
+        writer.writeInt32("bottleId", ub.getBottleId());
+        BottleCodec.writeString(writer, "name", ub.getName());
+        writeInt(writer, "crateId", ub.getCrateId());
+        writer.writeDouble("volume", ub.getVolume());
+        writer.writeDouble("pricePerBottle", ub.getPricePerBottle());
+        if (ub.getPricePerCrate() == null) writer.writeNull("pricePerCrate");
+        else writer.writeDouble("pricePerCrate", ub.getPricePerCrate());
+        writer.writeInt32("bottlesInStock", ub.getBottlesInStock());
+        writeInt(writer, "cratesInStock", ub.getCratesInStock());
+        writeInt(writer, "totalBottlesInCrates", ub.getTotalBottlesInCrates());
+        writer.writeBoolean("isAlcoholic", ub.getIsAlcoholic());
+        writer.writeDouble("volumePercent", ub.getVolumePercent());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<UnifiedBeverage> getEncoderClass() {
+        return UnifiedBeverage.class;
+    }
+
+    private static void writeInt(BsonWriter writer, String name, Integer value) {
+        if (value == null) writer.writeNull(name);
+        else writer.writeInt32(name, value);
+    }
+}
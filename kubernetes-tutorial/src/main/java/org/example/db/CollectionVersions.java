@@ -0,0 +1,151 @@
+package org.example.db;
+
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.example.logging.RequestLog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Monotonic version counter per collection, bumped by every DAO write and used to build ETags.
+ * Counters live in the "versions" collection so all replicas agree; each replica polls them in
+ * the background, so a write on another replica is seen here within one poll interval.
+ * A collection whose version is unknown (before the first poll, or after a failed bump) has
+ * no version, and callers must not serve conditional responses for it.
+ *
+ * When a version moves for a reason other than this replica's own bump (a write on another
+ * replica), the {@link #onChange} listeners run before the new version is published, so
+ * per-replica caches are dropped before any ETag of the new version can be handed out.
+ *
+ * Each version carries the operation time of the primary read or write that observed it.
+ * Every write counted by the version happened before that time, so a read with
+ * afterClusterTime at it sees them all, even on a lagging secondary.
+ */
+@Singleton
+public class CollectionVersions {
+
+    /** A version and the operation time it was observed at (null on a standalone server). */
+    public static final class Stamp {
+        public final long version;
+        public final BsonTimestamp operationTime;
+        public Stamp(long version, BsonTimestamp operationTime) {
+            this.version = version; this.operationTime = operationTime;
+        }
+
+        static Stamp newer(Stamp a, Stamp b) {
+            return b.version > a.version ? b : a;
+        }
+    }
+
+    private static final RequestLog log = RequestLog.get("CollectionVersions");
+
+    private final MongoClient client;
+    private final MongoCollection<Document> col;
+    private final long pollMillis;
+    private final Map<String, Stamp> versions = new ConcurrentHashMap<>();
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    // a failed bump leaves the stored counter behind the data; only a later successful bump clears this
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<String, List<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "collection-versions");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Inject
+    public CollectionVersions(MongoClient client) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.client = client;
+        // always the primary: a version read from a lagging secondary would hand out ETags late
+        this.col = client.getDatabase(dbName).getCollection("versions").withReadPreference(ReadPreference.primary());
+        this.pollMillis = Long.parseLong(System.getenv().getOrDefault("VERSIONS_POLL_INTERVAL_MS", "1000"));
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /** Runs {@code listener} whenever another replica's write to {@code collection} is observed. */
+    public void onChange(String collection, Runnable listener) {
+        known.add(collection);
+        listeners.computeIfAbsent(collection, c -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /** Current version, or null when it is not known. */
+    public Long version(String collection) {
+        Stamp stamp = stamp(collection);
+        return stamp == null ? null : stamp.version;
+    }
+
+    /** Current version with its operation time, or null when it is not known. */
+    public Stamp stamp(String collection) {
+        known.add(collection);
+        return versions.get(collection);
+    }
+
+    /** Called after a write to {@code collection} has been acknowledged. */
+    public void bump(String collection) {
+        known.add(collection);
+        try (ClientSession session = client.startSession()) {
+            Document d = col.findOneAndUpdate(session, eq("_id", collection), Updates.inc("v", 1L),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+            dirty.remove(collection);
+            Stamp stamp = new Stamp(d.getLong("v"), session.getOperationTime());
+            Stamp known = versions.get(collection);
+            // more than our own increment: other replicas wrote in between
+            if (known == null || stamp.version > known.version + 1) changed(collection);
+            versions.merge(collection, stamp, Stamp::newer);
+        } catch (MongoException e) {
+            dirty.add(collection);
+            versions.remove(collection);
+            log.log(Level.WARNING, "version bump failed", "collection", collection, "error", e.getMessage());
+        }
+    }
+
+    private void changed(String collection) {
+        for (Runnable listener : listeners.getOrDefault(collection, List.of())) listener.run();
+    }
+
+    private void poll() {
+        try (ClientSession session = client.startSession()) {
+            Map<String, Long> remote = new HashMap<>();
+            for (Document d : col.find(session)) remote.put(d.getString("_id"), d.getLong("v"));
+            BsonTimestamp observedAt = session.getOperationTime();
+            for (String name : known) {
+                Stamp stamp = new Stamp(remote.getOrDefault(name, 0L), observedAt);
+                Stamp current = versions.get(name);
+                if (!dirty.contains(name) && (current == null || stamp.version > current.version)) changed(name);
+                versions.merge(name, stamp, Stamp::newer);
+                if (dirty.contains(name)) versions.remove(name);
+            }
+        } catch (MongoException e) {
+            log.log(Level.FINE, "version poll failed", "error", e.getMessage());
+        }
+    }
+}
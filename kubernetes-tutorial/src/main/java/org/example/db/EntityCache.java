@@ -0,0 +1,174 @@
+package org.example.db;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Small read-through cache used by the DAOs in front of Mongo.
+ * Entries expire after a fixed TTL; when the cache grows past its maximum size
+ * the least recently used entry is evicted. Writes on another replica
+ * are not seen here, so the TTL is the upper bound on staleness.
+ *
+ * Values are mutable domain objects, so the cache copies them on the way in and on the way
+ * out; a caller changing what it got never changes what the next reader sees.
+ *
+ * Every put, invalidation and load is stamped from one counter. A load only stores its
+ * result if no newer put or invalidation of the key (or invalidateAll) happened while it was
+ * reading, so a slow load can never overwrite what a writer cached after its write.
+ * Invalidations leave a tombstone for that purpose; evicting an entry raises the floor of
+ * the key's stripe, so the guarantee survives eviction without dropping loads of other keys.
+ */
+public class EntityCache<K, V> {
+
+    public static final class Stats {
+        public final String name; public final long hits; public final long misses;
+        public final long evictions; public final int size;
+        public Stats(String name, long hits, long misses, long evictions, int size) {
+            this.name = name; this.hits = hits; this.misses = misses; this.evictions = evictions; this.size = size;
+        }
+
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "name='" + name + '\'' +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value; final long expiresAt; final long stamp;  // value is null for a tombstone
+        Entry(V value, long expiresAt, long stamp) { this.value = value; this.expiresAt = expiresAt; this.stamp = stamp; }
+        boolean liveAt(long now) { return value != null && expiresAt - now > 0; }
+    }
+
+    private static final int FLOOR_STRIPES = 1024;
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final UnaryOperator<V> copy;
+    // access order, so the first entry is the least recently used; guarded by this
+    private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // all guarded by this; loads stamped at or below floor (invalidateAll) or below their
+    // stripe's entry in floors (eviction) are dropped
+    private long clock;
+    private long floor;
+    private final long[] floors = new long[FLOOR_STRIPES];
+
+    public EntityCache(String name, int maxSize, Duration ttl, UnaryOperator<V> copy) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttl.toNanos();
+        this.copy = copy;
+    }
+
+    /** Returns the cached value or loads it; empty results are not cached. */
+    public Optional<V> get(K key, Function<K, Optional<V>> loader) {
+        Optional<V> cached = getIfPresent(key);
+        if (cached.isPresent()) return cached;
+        long stamp = beginLoad();
+        Optional<V> loaded = loader.apply(key);
+        putLoaded(key, loaded.orElse(null), stamp);
+        return loaded;
+    }
+
+    /** Stamp to take before reading a value from Mongo that will be passed to {@link #putLoaded}. */
+    public synchronized long beginLoad() {
+        return ++clock;
+    }
+
+    /**
+     * Caches a value read after {@code stamp} was taken, unless the key was written or invalidated
+     * since; a null value drops an older entry.
+     */
+    public void putLoaded(K key, V value, long stamp) {
+        V stored = value == null ? null : copy.apply(value);
+        synchronized (this) {
+            if (stamp <= floor || stamp <= floors[stripe(key)]) return;
+            Entry<V> cur = map.get(key);
+            if (cur != null && cur.stamp > stamp) return;
+            if (stored == null) map.remove(key);
+            else map.put(key, new Entry<>(stored, System.nanoTime() + ttlNanos, stamp));
+            trim();
+        }
+    }
+
+    public Optional<V> getIfPresent(K key) {
+        V value;
+        synchronized (this) {
+            Entry<V> e = map.get(key);
+            value = e != null && e.liveAt(System.nanoTime()) ? e.value : null;
+        }
+        if (value == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(copy.apply(value));
+    }
+
+    /** Caches the value a writer just wrote; call after the write was acknowledged. */
+    public void put(K key, V value) {
+        V stored = copy.apply(value);
+        synchronized (this) {
+            map.put(key, new Entry<>(stored, System.nanoTime() + ttlNanos, ++clock));
+            trim();
+        }
+    }
+
+    /** Drops the key and keeps loads that started earlier from re-caching it; call after the write. */
+    public synchronized void invalidate(K key) {
+        map.put(key, new Entry<>(null, System.nanoTime() + ttlNanos, ++clock));
+        trim();
+    }
+
+    public synchronized void invalidateAll() {
+        floor = ++clock;
+        map.clear();
+    }
+
+    public Stats stats() {
+        int size = 0;
+        long now = System.nanoTime();
+        synchronized (this) {
+            for (Entry<V> e : map.values()) if (e.liveAt(now)) size++;
+        }
+        return new Stats(name, hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    // caller holds the lock
+    private void trim() {
+        Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+        while (map.size() > maxSize && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            it.remove();
+            // a load older than the evicted entry must not resurrect what the entry superseded
+            int stripe = stripe(eldest.getKey());
+            floors[stripe] = Math.max(floors[stripe], eldest.getValue().stamp);
+            if (eldest.getValue().value != null) evictions.increment();
+        }
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (FLOOR_STRIPES - 1);
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.db;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.Document;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings Mongo in the background and caches the result together with pool occupancy,
+ * so readiness checks are answered from memory and never add load to the database.
+ */
+@Singleton
+public class HealthProber {
+
+    public static final class Status {
+        public final boolean ready; public final String reason; public final long pingMillis;
+        public final int inUse; public final int waiting; public final int capacity; public final long checkedAt;
+        Status(boolean ready, String reason, long pingMillis, int inUse, int waiting, int capacity, long checkedAt) {
+            this.ready = ready; this.reason = reason; this.pingMillis = pingMillis;
+            this.inUse = inUse; this.waiting = waiting; this.capacity = capacity; this.checkedAt = checkedAt;
+        }
+
+        @Override
+        public String toString() {
+            return (ready ? "ok" : "not ready: " + reason)
+                    + " ping=" + pingMillis + "ms pool=" + inUse + "/" + capacity + " waiting=" + waiting;
+        }
+    }
+
+    private final MongoDatabase db;
+    private final PoolStats pool;
+    private final long intervalMillis;
+    private final long maxPingMillis;
+    private final int maxWaitQueue;
+    private final double maxPoolUsage;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "health-prober");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Status status = new Status(false, "no probe yet", -1, 0, 0, 0, 0);
+
+    @Inject
+    public HealthProber(MongoClient client, PoolStats pool) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.db = client.getDatabase(dbName);
+        this.pool = pool;
+        this.intervalMillis = Long.parseLong(System.getenv().getOrDefault("HEALTH_PROBE_INTERVAL_MS", "2000"));
+        this.maxPingMillis = Long.parseLong(System.getenv().getOrDefault("HEALTH_MAX_PING_MS", "250"));
+        this.maxWaitQueue = Integer.parseInt(System.getenv().getOrDefault("HEALTH_MAX_POOL_WAIT_QUEUE", "50"));
+        this.maxPoolUsage = Double.parseDouble(System.getenv().getOrDefault("HEALTH_MAX_POOL_USAGE", "1.0"));
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::probe, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Latest cached status. Pool numbers are read live (they are just counters); a ping
+     * result older than three intervals counts as not ready, e.g. when the ping itself hangs.
+     */
+    public Status current() {
+        Status s = status;
+        long now = System.currentTimeMillis();
+        int inUse = pool.inUse(), waiting = pool.waiting(), capacity = pool.capacity();
+        String reason = s.ready ? null : s.reason;
+        if (reason == null && now - s.checkedAt > 3 * intervalMillis) reason = "ping result is stale";
+        if (reason == null && waiting > maxWaitQueue) reason = "pool wait queue " + waiting + " > " + maxWaitQueue;
+        if (reason == null && capacity > 0 && waiting > 0 && inUse >= capacity * maxPoolUsage) reason = "pool saturated";
+        return new Status(reason == null, reason, s.pingMillis, inUse, waiting, capacity, s.checkedAt);
+    }
+
+    private void probe() {
+        long start = System.nanoTime();
+        try {
+            db.runCommand(new Document("ping", 1));
+            long ping = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String reason = ping > maxPingMillis ? "ping " + ping + "ms > " + maxPingMillis + "ms" : null;
+            status = new Status(reason == null, reason, ping, 0, 0, 0, System.currentTimeMillis());
+        } catch (MongoException e) {
+            status = new Status(false, "ping failed: " + e.getMessage(), -1, 0, 0, 0, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // keep the scheduler alive whatever happens
+            status = new Status(false, "probe error: " + e, -1, 0, 0, 0, System.currentTimeMillis());
+        }
+    }
+}
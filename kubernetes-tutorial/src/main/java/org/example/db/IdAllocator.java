@@ -0,0 +1,85 @@
+package org.example.db;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.Document;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Hi/lo id allocator. Each replica reserves a block of ids with one atomic $inc on the
+ * "counters" collection and then hands them out locally, so inserts don't need a
+ * round trip per id and concurrent replicas never collide.
+ */
+@Singleton
+public class IdAllocator {
+
+    private static final class Block {
+        final ReentrantLock lock = new ReentrantLock();
+        boolean seeded;
+        long next = 1;
+        long end = 0;
+    }
+
+    private final MongoDatabase db;
+    private final MongoCollection<Document> counters;
+    private final int blockSize;
+    private final ConcurrentHashMap<String, Block> blocks = new ConcurrentHashMap<>();
+
+    @Inject
+    public IdAllocator(MongoClient client) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.db = client.getDatabase(dbName);
+        this.counters = db.getCollection("counters");
+        this.blockSize = Math.max(1, Integer.parseInt(System.getenv().getOrDefault("ID_BLOCK_SIZE", "50")));
+    }
+
+    /** Returns the next unused id for the given collection. */
+    public int next(String collection) {
+        Block b = blocks.computeIfAbsent(collection, c -> new Block());
+        b.lock.lock();
+        try {
+            if (!b.seeded) {
+                seed(collection);
+                b.seeded = true;
+            }
+            if (b.next > b.end) {
+                long hi = reserve(collection, blockSize);
+                b.next = hi - blockSize + 1;
+                b.end = hi;
+            }
+            return Math.toIntExact(b.next++);
+        } finally {
+            b.lock.unlock();
+        }
+    }
+
+    // Moves the counter past ids that already exist (e.g. data loaded before the counter).
+    // $max is idempotent, so replicas seeding at the same time can't move it backwards.
+    private void seed(String collection) {
+        Document last = db.getCollection(collection).find()
+                .sort(Sorts.descending("id"))
+                .projection(Projections.include("id"))
+                .first();
+        int maxId = last == null || last.get("id") == null ? 0 : ((Number) last.get("id")).intValue();
+        counters.updateOne(eq("_id", collection), Updates.max("seq", maxId), new UpdateOptions().upsert(true));
+    }
+
+    private long reserve(String collection, int n) {
+        Document d = counters.findOneAndUpdate(eq("_id", collection), Updates.inc("seq", n),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        return ((Number) d.get("seq")).longValue();
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.db;
+
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoException;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.example.logging.RequestLog;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+import static com.mongodb.client.model.Filters.*;
+
+/**
+ * Declares the indexes the DAOs rely on, creates them at startup and checks with
+ * explain() that the hot queries are actually answered by an index scan.
+ */
+@Singleton
+public class IndexManager {
+    private static final RequestLog log = RequestLog.get("IndexManager");
+
+    /** Case-insensitive (but accent-sensitive) comparison used for exact name lookups. */
+    public static final Collation NAME_COLLATION = Collation.builder()
+            .locale("en")
+            .collationStrength(CollationStrength.SECONDARY)
+            .build();
+
+    private static final class IndexSpec {
+        final String collection; final Bson keys; final IndexOptions options;
+        IndexSpec(String collection, Bson keys, IndexOptions options) {
+            this.collection = collection; this.keys = keys; this.options = options;
+        }
+    }
+
+    private static final class QueryCheck {
+        final String collection; final String description; final Function<MongoDatabase, FindIterable<Document>> query;
+        QueryCheck(String collection, String description, Function<MongoDatabase, FindIterable<Document>> query) {
+            this.collection = collection; this.description = description; this.query = query;
+        }
+    }
+
+    private static final List<IndexSpec> INDEXES = List.of(
+            new IndexSpec("bottles", Indexes.ascending("id"), new IndexOptions().name("id_unique").unique(true)),
+            new IndexSpec("bottles", Indexes.ascending("name"), new IndexOptions().name("name_ci").collation(NAME_COLLATION)),
+            new IndexSpec("crates", Indexes.ascending("id"), new IndexOptions().name("id_unique").unique(true)),
+            new IndexSpec("crates", Indexes.ascending("bottleId"), new IndexOptions().name("bottleId")),
+            new IndexSpec("crates", Indexes.ascending("price"), new IndexOptions().name("price")),
+            new IndexSpec("beverages", Indexes.ascending("bottleId"), new IndexOptions().name("bottleId_unique").unique(true)),
+            new IndexSpec("beverages", Indexes.ascending("name", "bottleId"), new IndexOptions().name("name_bottleId"))
+    );
+
+    private static final List<QueryCheck> HOT_QUERIES = List.of(
+            new QueryCheck("bottles", "find by id",
+                    db -> db.getCollection("bottles").find(eq("id", 1))),
+            new QueryCheck("bottles", "find by name",
+                    db -> db.getCollection("bottles").find(eq("name", "x")).collation(NAME_COLLATION)),
+            new QueryCheck("crates", "find by id",
+                    db -> db.getCollection("crates").find(eq("id", 1))),
+            new QueryCheck("crates", "find by bottleId",
+                    db -> db.getCollection("crates").find(eq("bottleId", 1))),
+            new QueryCheck("crates", "price range",
+                    db -> db.getCollection("crates").find(and(gte("price", 0.0), lte("price", 1.0))).sort(Sorts.ascending("price"))),
+            new QueryCheck("beverages", "find by bottleId",
+                    db -> db.getCollection("beverages").find(eq("bottleId", 1))),
+            new QueryCheck("beverages", "sorted listing",
+                    db -> db.getCollection("beverages").find().sort(Sorts.ascending("name", "bottleId")).limit(10))
+    );
+
+    private final MongoDatabase db;
+
+    @Inject
+    public IndexManager(MongoClient client) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.db = client.getDatabase(dbName);
+    }
+
+    /**
+     * Runs {@link #run()} on a background thread, so an unreachable Mongo (each call waits out
+     * server selection) does not hold up startup and the health endpoints.
+     */
+    public void start() {
+        Thread t = new Thread(this::run, "index-manager");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Creates missing indexes and verifies the query plans; failures are logged, never thrown. */
+    public void run() {
+        ensureIndexes();
+        verifyQueryPlans();
+    }
+
+    public void ensureIndexes() {
+        for (IndexSpec spec : INDEXES) {
+            try {
+                db.getCollection(spec.collection).createIndex(spec.keys, spec.options);
+                log.info("index ensured", "collection", spec.collection, "index", spec.options.getName());
+            } catch (MongoException e) {
+                log.log(Level.WARNING, "index creation failed", "collection", spec.collection,
+                        "index", spec.options.getName(), "error", e.getMessage());
+            }
+        }
+    }
+
+    public void verifyQueryPlans() {
+        for (QueryCheck check : HOT_QUERIES) {
+            try {
+                Document explain = check.query.apply(db).explain(ExplainVerbosity.QUERY_PLANNER);
+                if (!usesIndex(explain)) {
+                    log.log(Level.WARNING, "query without index", "query", check.description,
+                            "collection", check.collection, "reason", "no IXSCAN in winning plan");
+                }
+            } catch (MongoException e) {
+                log.log(Level.WARNING, "query explain failed", "query", check.description,
+                        "collection", check.collection, "error", e.getMessage());
+            }
+        }
+    }
+
+    private static boolean usesIndex(Document explain) {
+        Document planner = explain.get("queryPlanner", Document.class);
+        Document winning = planner == null ? null : planner.get("winningPlan", Document.class);
+        return (winning == null ? explain : winning).toJson().contains("\"IXSCAN\"");
+    }
+}
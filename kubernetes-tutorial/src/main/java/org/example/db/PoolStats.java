@@ -0,0 +1,86 @@
+package org.example.db;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import com.mongodb.connection.ServerId;
+import jakarta.inject.Singleton;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live connection pool occupancy, summed over the pools of all servers the client talks to.
+ * Kept as plain counters so health checks can read it without touching Mongo.
+ */
+@Singleton
+public class PoolStats implements ConnectionPoolListener {
+
+    // max size of each open pool; a closed pool's share is removed again (failover re-creates pools)
+    private final Map<ServerId, Integer> capacities = new ConcurrentHashMap<>();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+
+    @Override
+    public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+        capacities.put(event.getServerId(), event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        capacities.remove(event.getServerId());
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        inUse.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    public int inUse() { return inUse.get(); }
+
+    /** Connections currently established, idle or checked out. */
+    public int open() { return open.get(); }
+
+    /** Threads currently waiting for a connection (checkout started, not yet completed). */
+    public int waiting() { return waiting.get(); }
+
+    public int capacity() {
+        int sum = 0;
+        for (int maxSize : capacities.values()) sum += maxSize;
+        return sum;
+    }
+}
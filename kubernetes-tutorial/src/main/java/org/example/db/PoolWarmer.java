@@ -0,0 +1,63 @@
+package org.example.db;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.Document;
+import org.example.logging.RequestLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+/**
+ * Opens MONGO_POOL_MIN_SIZE connections of the sync client's pool at startup, so the first requests find an
+ * established pool instead of paying for TCP, TLS and auth handshakes. The driver would
+ * fill the pool to its minimum on its own, but only in the background and at its own pace.
+ */
+@Singleton
+public class PoolWarmer {
+    private static final RequestLog log = RequestLog.get("PoolWarmer");
+    private static final Document PING = new Document("ping", 1);
+
+    private final MongoDatabase db;
+    private final PoolStats pool;
+    private final long timeoutMillis;
+
+    @Inject
+    public PoolWarmer(MongoClient client, PoolStats pool) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.db = client.getDatabase(dbName);
+        this.pool = pool;
+        this.timeoutMillis = Long.parseLong(System.getenv().getOrDefault("MONGO_POOL_WARMUP_TIMEOUT_MS", "5000"));
+    }
+
+    /** Pings concurrently until the minimum size is reached or the timeout passes; never throws. */
+    public void run() {
+        int target = MongoSettings.POOL_MIN_SIZE == null ? 0 : MongoSettings.POOL_MIN_SIZE;
+        if (MongoSettings.SYNC_POOL_MAX_SIZE > 0) target = Math.min(target, MongoSettings.SYNC_POOL_MAX_SIZE);
+        if (target <= 0) return;
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // the first ping waits for server selection; after it, concurrent pings force new connections
+            db.runCommand(PING);
+            while (pool.open() < target && System.currentTimeMillis() < deadline) {
+                List<Future<?>> pings = new ArrayList<>();
+                for (int i = pool.open(); i < target; i++) pings.add(executor.submit(() -> db.runCommand(PING)));
+                for (Future<?> ping : pings) ping.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (MongoException | ExecutionException e) {
+            log.log(Level.WARNING, "pool warm-up failed", "error", e.getMessage());
+        }
+        log.info("pool warmed", "open", pool.open(), "target", target, "durationMs", System.currentTimeMillis() - start);
+    }
+}
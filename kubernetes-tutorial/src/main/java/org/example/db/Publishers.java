@@ -0,0 +1,52 @@
+package org.example.db;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bridges the reactive driver's Publishers to CompletableFutures, so async DAO methods compose
+ * with thenCombine/thenApply and resources can resume an AsyncResponse from the completion.
+ * Futures complete on the driver's I/O threads; callers must not block in their callbacks.
+ */
+public final class Publishers {
+
+    private Publishers() {}
+
+    /** All elements, in order. */
+    public static <T> CompletableFuture<List<T>> toList(Publisher<T> publisher) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override public void onSubscribe(Subscription s) { s.request(Long.MAX_VALUE); }
+            @Override public void onNext(T item) { items.add(item); }
+            @Override public void onError(Throwable t) { future.completeExceptionally(t); }
+            @Override public void onComplete() { future.complete(items); }
+        });
+        return future;
+    }
+
+    /** The first element, or null when the publisher completes empty; cancels after one. */
+    public static <T> CompletableFuture<T> first(Publisher<T> publisher) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+
+            @Override public void onSubscribe(Subscription s) {
+                subscription = s;
+                s.request(1);
+            }
+            @Override public void onNext(T item) {
+                if (future.complete(item)) subscription.cancel();
+            }
+            @Override public void onError(Throwable t) { future.completeExceptionally(t); }
+            @Override public void onComplete() { future.complete(null); }
+        });
+        return future;
+    }
+}
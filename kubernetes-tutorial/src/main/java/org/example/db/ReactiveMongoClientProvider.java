@@ -0,0 +1,46 @@
+package org.example.db;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import jakarta.inject.Singleton;
+import org.example.metrics.MongoCommandMetrics;
+import org.example.metrics.MongoPoolMetrics;
+import org.glassfish.hk2.api.Factory;
+
+/**
+ * The reactive-streams client behind the async read paths. It is configured from the same
+ * settings as the sync client but owns a separate connection pool, sized from its share of
+ * the per-pod budget (MONGO_REACTIVE_POOL_MAX_SIZE) and not pre-warmed. Its pool is tracked
+ * in its own PoolStats and under client="reactive" in the pool metrics; the injected PoolStats
+ * that readiness and warm-up use describes the sync pool alone.
+ */
+@Singleton
+public class ReactiveMongoClientProvider implements Factory<MongoClient> {
+    private final PoolStats poolStats = new PoolStats();
+    private MongoClient client;
+
+    /** Occupancy of the reactive pool. */
+    public PoolStats poolStats() {
+        return poolStats;
+    }
+
+    @Override
+    public MongoClient provide() {
+        if (client == null) {
+            MongoClientSettings settings = MongoSettings.fromEnv(MongoSettings.REACTIVE_POOL_MAX_SIZE, 0)
+                    .addCommandListener(new MongoCommandMetrics())
+                    .applyToConnectionPoolSettings(pool -> pool
+                            .addConnectionPoolListener(new MongoPoolMetrics("reactive"))
+                            .addConnectionPoolListener(poolStats))
+                    .build();
+            client = MongoClients.create(settings);
+        }
+        return client;
+    }
+
+    @Override
+    public void dispose(MongoClient instance) {
+        if (client != null) client.close();
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.dto.bulkDTOs;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/** Outcome of one item of a bulk import, written as one NDJSON line. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+    public static final String CREATED = "created";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    private int index;
+    private String status;
+    private Integer id;
+    private List<String> errors;
+
+    public BulkItemResult() {}
+
+    public BulkItemResult(int index, String status, Integer id, List<String> errors) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.errors = errors;
+    }
+
+    public static BulkItemResult created(int index, int id) { return new BulkItemResult(index, CREATED, id, null); }
+    public static BulkItemResult invalid(int index, List<String> errors) { return new BulkItemResult(index, INVALID, null, errors); }
+    public static BulkItemResult failed(int index, String error) { return new BulkItemResult(index, FAILED, null, List.of(error)); }
+
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public List<String> getErrors() { return errors; }
+    public void setErrors(List<String> errors) { this.errors = errors; }
+}
@@ -0,0 +1,33 @@
+package org.example.dto.stockDTOs;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * A relative stock change; {@code id} is only read by the batch endpoints, which reject it
+ * when missing. The delta is bounded so negating it, or summing a batch of them, stays in range.
+ */
+public class StockAdjustment {
+    public static final int MAX_DELTA = 1_000_000;
+
+    @PositiveOrZero(message = "ID must be a positive integer")
+    private Integer id;
+    @NotNull(message = "Delta is required")
+    @Min(value = -MAX_DELTA, message = "Delta must be at least -" + MAX_DELTA)
+    @Max(value = MAX_DELTA, message = "Delta must be at most " + MAX_DELTA)
+    private Integer delta;
+
+    public StockAdjustment() {}
+    public StockAdjustment(Integer id, Integer delta) {
+        this.id = id;
+        this.delta = delta;
+    }
+
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public Integer getDelta() { return delta; }
+    public void setDelta(Integer delta) { this.delta = delta; }
+}
@@ -0,0 +1,22 @@
+package org.example.dto.stockDTOs;
+
+/**
+ * Outcome of a batch stock adjustment. Adjustments that would have taken stock
+ * below zero, or that name an unknown id, are skipped and not counted as applied.
+ */
+public class StockBatchResult {
+    private int requested;
+    private int applied;
+
+    public StockBatchResult() {}
+    public StockBatchResult(int requested, int applied) {
+        this.requested = requested;
+        this.applied = applied;
+    }
+
+    public int getRequested() { return requested; }
+    public void setRequested(int requested) { this.requested = requested; }
+
+    public int getApplied() { return applied; }
+    public void setApplied(int applied) { this.applied = applied; }
+}
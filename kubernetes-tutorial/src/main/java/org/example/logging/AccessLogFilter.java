@@ -0,0 +1,36 @@
+package org.example.logging;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.ext.Provider;
+import org.example.metrics.MetricsFilter;
+
+import java.util.logging.Level;
+
+/** One structured access-log line per request: route, status and duration. */
+@Provider
+public class AccessLogFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final RequestLog log = RequestLog.get("access");
+    private static final String START = AccessLogFilter.class.getName() + ".start";
+
+    @Override
+    public void filter(ContainerRequestContext req) {
+        req.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext req, ContainerResponseContext res) {
+        Object start = req.getProperty(START);
+        if (start == null) return;
+        int status = res.getStatus();
+        Level level = status >= 500 ? Level.WARNING : Level.INFO;
+        String method = req.getMethod();
+        String route = MetricsFilter.route(req);
+        // the "GET /route" key is only built for requests that are actually logged
+        if (!log.isEnabled(level, method, route)) return;
+        log.write(level, method + " " + route, "status", status, "durationUs", (System.nanoTime() - (Long) start) / 1_000);
+    }
+}
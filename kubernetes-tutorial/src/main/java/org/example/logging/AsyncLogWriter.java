@@ -0,0 +1,129 @@
+package org.example.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/** Background thread that drains the ring buffer and writes one JSON object per line to stdout. */
+final class AsyncLogWriter implements Runnable {
+
+    static final AsyncLogWriter INSTANCE = new AsyncLogWriter(
+            Integer.parseInt(System.getenv().getOrDefault("LOG_BUFFER_SIZE", "16384")));
+
+    private final RingBuffer<LogEvent> ring;
+    private final LongAdder dropped = new LongAdder();
+    private final OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024);
+    private final StringBuilder line = new StringBuilder(256);
+    private volatile boolean running = true;
+    private final Thread thread;
+
+    private AsyncLogWriter(int capacity) {
+        this.ring = new RingBuffer<>(capacity);
+        this.thread = new Thread(this, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+    }
+
+    void enqueue(LogEvent e) {
+        if (!ring.offer(e)) dropped.increment();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (!drain()) LockSupport.parkNanos(1_000_000L);
+        }
+        drain();
+    }
+
+    /** Writes everything queued; returns false if there was nothing to write. */
+    private boolean drain() {
+        boolean wrote = false;
+        try {
+            LogEvent e;
+            while ((e = ring.poll()) != null) {
+                write(e);
+                wrote = true;
+            }
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                write(new LogEvent(System.currentTimeMillis(), java.util.logging.Level.WARNING, "logging", null,
+                        new Object[]{"dropped", lost}));
+                wrote = true;
+            }
+            if (wrote) out.flush();
+        } catch (IOException ignored) {
+            // stdout is gone; nothing sensible left to do with log lines
+        }
+        return wrote;
+    }
+
+    private void write(LogEvent e) throws IOException {
+        line.setLength(0);
+        line.append("{\"ts\":\"").append(Instant.ofEpochMilli(e.timestamp))
+                .append("\",\"level\":\"").append(e.level.getName())
+                .append("\",\"logger\":");
+        appendString(e.logger);
+        if (e.route != null) {
+            line.append(",\"route\":");
+            appendString(e.route);
+        }
+        Object[] f = e.fields;
+        for (int i = 0; i + 1 < f.length; i += 2) {
+            line.append(',');
+            appendString(String.valueOf(f[i]));
+            line.append(':');
+            Object v = f[i + 1];
+            if (v == null) line.append("null");
+            else if (v instanceof Number || v instanceof Boolean) line.append(v);
+            else if (v instanceof Throwable t) appendString(stackTrace(t));
+            else appendString(v.toString());
+        }
+        line.append("}\n");
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private void appendString(String s) {
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    private void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(2000);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.logging;
+
+import java.util.logging.Level;
+
+/** One queued log record; formatted to JSON on the writer thread, not the request thread. */
+final class LogEvent {
+    final long timestamp;
+    final Level level;
+    final String logger;
+    final String route;
+    final Object[] fields; // alternating key, value
+
+    LogEvent(long timestamp, Level level, String logger, String route, Object[] fields) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.logger = logger;
+        this.route = route;
+        this.fields = fields;
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.logging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+
+/**
+ * Structured, asynchronous logging; the service's only log format. Calls take the route
+ * (background tasks pass an event name instead) and key/value pairs as parameters; nothing
+ * is formatted on the calling thread, and when the level is disabled or the route is sampled
+ * out the call returns before building any event. A Throwable value is written with its
+ * stack trace.
+ *
+ * Configuration: LOG_LEVEL (default INFO), LOG_SAMPLE_DEFAULT (0..1, default 1) and
+ * LOG_SAMPLE_RATES, e.g. "GET /beverages=0.1;GET /bottles/id/{id}=0.5".
+ */
+public final class RequestLog {
+
+    private static final int THRESHOLD = Level.parse(System.getenv().getOrDefault("LOG_LEVEL", "INFO")).intValue();
+    private static final double DEFAULT_RATE = Double.parseDouble(System.getenv().getOrDefault("LOG_SAMPLE_DEFAULT", "1.0"));
+    private static final Map<String, Double> RATES = parseRates(System.getenv().getOrDefault("LOG_SAMPLE_RATES", ""));
+    // the same rates keyed by method, then route, so a request's route key needn't be concatenated
+    private static final Map<String, Map<String, Double>> RATES_BY_METHOD = byMethod(RATES);
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    private final String name;
+
+    private RequestLog(String name) {
+        this.name = name;
+    }
+
+    public static RequestLog get(String name) {
+        return new RequestLog(name);
+    }
+
+    /** True if an event at this level for this route would be written (includes the sampling draw). */
+    public boolean isEnabled(Level level, String route) {
+        if (level.intValue() < THRESHOLD) return false;
+        if (level.intValue() >= Level.WARNING.intValue()) return true; // never sample out problems
+        return sampled(RATES.getOrDefault(route, DEFAULT_RATE));
+    }
+
+    /** {@link #isEnabled(Level, String)} for the route "method route", without building that string. */
+    public boolean isEnabled(Level level, String method, String route) {
+        if (level.intValue() < THRESHOLD) return false;
+        if (level.intValue() >= Level.WARNING.intValue()) return true;
+        return sampled(RATES_BY_METHOD.getOrDefault(method, Map.of()).getOrDefault(route, DEFAULT_RATE));
+    }
+
+    public void info(String route) {
+        if (isEnabled(Level.INFO, route)) emit(Level.INFO, route, NO_FIELDS);
+    }
+
+    public void info(String route, String k1, Object v1) {
+        if (isEnabled(Level.INFO, route)) emit(Level.INFO, route, new Object[]{k1, v1});
+    }
+
+    public void info(String route, String k1, Object v1, String k2, Object v2) {
+        if (isEnabled(Level.INFO, route)) emit(Level.INFO, route, new Object[]{k1, v1, k2, v2});
+    }
+
+    public void info(String route, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        if (isEnabled(Level.INFO, route)) emit(Level.INFO, route, new Object[]{k1, v1, k2, v2, k3, v3});
+    }
+
+    /** Alternating keys and values; prefer the fixed-arity overloads for up to three pairs. */
+    public void info(String route, Object... keyValues) {
+        if (isEnabled(Level.INFO, route)) emit(Level.INFO, route, keyValues);
+    }
+
+    public void log(Level level, String route, Object... keyValues) {
+        if (isEnabled(level, route)) emit(level, route, keyValues);
+    }
+
+    /** Writes without checking level or sampling; for callers that already asked {@link #isEnabled}. */
+    void write(Level level, String route, Object... keyValues) {
+        emit(level, route, keyValues);
+    }
+
+    private void emit(Level level, String route, Object[] fields) {
+        AsyncLogWriter.INSTANCE.enqueue(new LogEvent(System.currentTimeMillis(), level, name, route, fields));
+    }
+
+    private static boolean sampled(double rate) {
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static Map<String, Map<String, Double>> byMethod(Map<String, Double> rates) {
+        Map<String, Map<String, Double>> out = new HashMap<>();
+        rates.forEach((key, rate) -> {
+            int sp = key.indexOf(' ');
+            if (sp > 0) out.computeIfAbsent(key.substring(0, sp), m -> new HashMap<>()).put(key.substring(sp + 1), rate);
+        });
+        return Map.copyOf(out);
+    }
+
+    private static Map<String, Double> parseRates(String spec) {
+        Map<String, Double> rates = new HashMap<>();
+        for (String entry : spec.split(";")) {
+            int eq = entry.lastIndexOf('=');
+            if (eq <= 0) continue;
+            rates.put(entry.substring(0, eq).trim(), Double.parseDouble(entry.substring(eq + 1).trim()));
+        }
+        return Map.copyOf(rates);
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.metrics;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import org.example.db.EntityCache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/** Reads {@link EntityCache.Stats} at scrape time instead of mirroring every hit into a counter. */
+class CacheCollector extends Collector {
+
+    private final List<EntityCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    void add(EntityCache<?, ?> cache) {
+        caches.add(cache);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<String> labels = List.of("cache");
+        CounterMetricFamily hits = new CounterMetricFamily("entity_cache_hits", "Cache hits", labels);
+        CounterMetricFamily misses = new CounterMetricFamily("entity_cache_misses", "Cache misses", labels);
+        CounterMetricFamily evictions = new CounterMetricFamily("entity_cache_evictions", "Size-based evictions", labels);
+        GaugeMetricFamily size = new GaugeMetricFamily("entity_cache_size", "Entries currently cached", labels);
+        for (EntityCache<?, ?> cache : caches) {
+            EntityCache.Stats s = cache.stats();
+            List<String> values = List.of(s.name);
+            hits.addMetric(values, s.hits);
+            misses.addMetric(values, s.misses);
+            evictions.addMetric(values, s.evictions);
+            size.addMetric(values, s.size);
+        }
+        return List.of(hits, misses, evictions, size);
+    }
+}
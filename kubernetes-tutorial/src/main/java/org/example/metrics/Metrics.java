@@ -0,0 +1,64 @@
+package org.example.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.hotspot.DefaultExports;
+import org.example.db.EntityCache;
+
+/** Process-wide Prometheus collectors, all registered in the default registry. */
+public final class Metrics {
+
+    private static final double[] MONGO_BUCKETS =
+            {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5};
+
+    public static final Histogram HTTP_LATENCY = Histogram.build()
+            .name("http_request_duration_seconds")
+            .help("HTTP request latency by route")
+            .labelNames("method", "route")
+            .register();
+
+    public static final Counter HTTP_RESPONSES = Counter.build()
+            .name("http_responses_total")
+            .help("HTTP responses by route and status code")
+            .labelNames("method", "route", "status")
+            .register();
+
+    public static final Histogram MONGO_COMMANDS = Histogram.build()
+            .name("mongo_command_duration_seconds")
+            .help("Mongo command round-trip time by command and collection")
+            .labelNames("command", "collection", "outcome")
+            .buckets(MONGO_BUCKETS)
+            .register();
+
+    public static final Histogram MONGO_POOL_WAIT = Histogram.build()
+            .name("mongo_pool_checkout_wait_seconds")
+            .help("Time spent waiting to check a connection out of the pool")
+            .labelNames("client", "outcome")
+            .buckets(MONGO_BUCKETS)
+            .register();
+
+    public static final Gauge MONGO_POOL_IN_USE = Gauge.build()
+            .name("mongo_pool_connections_in_use")
+            .help("Connections currently checked out of the pool")
+            .labelNames("client")
+            .register();
+
+    private static final CacheCollector CACHES = new CacheCollector().register();
+
+    static {
+        DefaultExports.initialize(); // JVM GC, memory pools, threads
+    }
+
+    private Metrics() {}
+
+    /** Exposes hit/miss/eviction counters of an entity cache. */
+    public static void registerCache(EntityCache<?, ?> cache) {
+        CACHES.add(cache);
+    }
+
+    public static CollectorRegistry registry() {
+        return CollectorRegistry.defaultRegistry;
+    }
+}
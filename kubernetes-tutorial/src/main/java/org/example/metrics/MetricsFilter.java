@@ -0,0 +1,55 @@
+package org.example.metrics;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ExtendedUriInfo;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import java.util.List;
+
+/**
+ * Records latency and status per route. Routes are the matched resource templates
+ * (e.g. /bottles/id/{id}), never raw paths, to keep label cardinality bounded.
+ * The timer starts before resource matching, so requests that match no resource
+ * (404, 405) are recorded too, under the route "unmatched".
+ */
+@Provider
+@PreMatching
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    @Override
+    public void filter(ContainerRequestContext req) {
+        req.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext req, ContainerResponseContext res) {
+        Object start = req.getProperty(START);
+        if (start == null) return;
+        String method = req.getMethod();
+        String route = route(req);
+        Metrics.HTTP_LATENCY.labels(method, route).observe((System.nanoTime() - (Long) start) / 1e9);
+        Metrics.HTTP_RESPONSES.labels(method, route, Integer.toString(res.getStatus())).inc();
+    }
+
+    /** The matched route template, or "unmatched" for requests no resource method handled. */
+    public static String route(ContainerRequestContext req) {
+        if (!(req.getUriInfo() instanceof ExtendedUriInfo info)) return "unmatched";
+        List<UriTemplate> templates = info.getMatchedTemplates();
+        if (templates.isEmpty()) return "unmatched";
+        StringBuilder sb = new StringBuilder();
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            String t = templates.get(i).getTemplate();
+            if (t.isEmpty() || t.equals("/")) continue;
+            if (!t.startsWith("/")) sb.append('/');
+            sb.append(t.endsWith("/") ? t.substring(0, t.length() - 1) : t);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+}
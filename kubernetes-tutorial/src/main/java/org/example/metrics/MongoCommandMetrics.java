@@ -0,0 +1,44 @@
+package org.example.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Times every Mongo command, labelled by command name and target collection. */
+public class MongoCommandMetrics implements CommandListener {
+
+    // the collection is only known from the started event, so keep it until the command completes
+    private final ConcurrentHashMap<Integer, String> collections = new ConcurrentHashMap<>();
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        collections.put(event.getRequestId(), collectionOf(event.getCommandName(), event.getCommand()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        observe(event.getRequestId(), event.getCommandName(), "success", event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        observe(event.getRequestId(), event.getCommandName(), "failure", event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void observe(int requestId, String command, String outcome, long nanos) {
+        String collection = collections.remove(requestId);
+        Metrics.MONGO_COMMANDS.labels(command, collection == null ? "" : collection, outcome).observe(nanos / 1e9);
+    }
+
+    private static String collectionOf(String commandName, BsonDocument command) {
+        // getMore names the collection in a separate field; most other commands use the command value
+        BsonValue v = "getMore".equals(commandName) ? command.get("collection") : command.get(commandName);
+        return v != null && v.isString() ? v.asString().getValue() : "";
+    }
+}
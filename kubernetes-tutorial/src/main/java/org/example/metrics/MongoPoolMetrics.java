@@ -0,0 +1,37 @@
+package org.example.metrics;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool checkout wait times and the number of connections in use, labelled with
+ * the client ("sync" or "reactive"), since each client owns its own pool.
+ */
+public class MongoPoolMetrics implements ConnectionPoolListener {
+
+    private final String client;
+
+    public MongoPoolMetrics(String client) {
+        this.client = client;
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        Metrics.MONGO_POOL_WAIT.labels(client, "success").observe(event.getElapsedTime(TimeUnit.NANOSECONDS) / 1e9);
+        Metrics.MONGO_POOL_IN_USE.labels(client).inc();
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        Metrics.MONGO_POOL_WAIT.labels(client, "failure").observe(event.getElapsedTime(TimeUnit.NANOSECONDS) / 1e9);
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        Metrics.MONGO_POOL_IN_USE.labels(client).dec();
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.resources;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import org.example.logging.RequestLog;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+
+final class Async {
+    private static final RequestLog log = RequestLog.get("Async");
+
+    private Async() {}
+
+    /**
+     * Resumes a suspended request when {@code stage} completes. WebApplicationExceptions are
+     * unwrapped and rendered by Jersey as if the resource method had thrown them. Any other
+     * failure becomes a plain 500 here: resumed unmapped, it would reach Grizzly only after the
+     * response had been started, and fail again there while writing the error page.
+     */
+    static void resume(AsyncResponse async, CompletionStage<Response> stage) {
+        stage.whenComplete((response, error) -> {
+            if (error == null) {
+                async.resume(response);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof WebApplicationException) {
+                async.resume(cause);
+            } else {
+                log.log(Level.WARNING, "async read failed", "error", cause);
+                async.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Internal server error").build());
+            }
+        });
+    }
+}
@@ -1,65 +1,158 @@
 package org.example.resources;
 
+import com.fasterxml.jackson.jakarta.rs.cbor.CBORMediaTypes;
+import com.fasterxml.jackson.jakarta.rs.smile.SmileMediaTypes;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.*;
+import org.example.caching.Versioned;
+import org.example.daos.BeverageCursor;
 import org.example.daos.BeverageDaoMongo;
 import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.logging.RequestLog;
 import org.example.model.exceptions.CustomException;
+import org.example.search.NameIndex;
+import org.example.services.BeverageProjector;
 import org.example.services.BeverageService;
 
 import java.util.List;
-import java.util.logging.Logger;
 
 @Path("/beverages")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, CBORMediaTypes.APPLICATION_JACKSON_CBOR, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
 public class BeverageResource {
-    private static final Logger logger = Logger.getLogger("BeverageResource");
+    private static final RequestLog log = RequestLog.get("BeverageResource");
+    private static final int MAX_SUGGESTIONS = 50;
 
     @Inject
     BeverageService beverageService;
 
+    @Inject
+    BeverageProjector beverageProjector;
+
+    @Versioned("beverages")
     @GET
-    public Response getAll(@Context SecurityContext securityContext,
+    public void getAll(@Context SecurityContext securityContext,
+                           @Context UriInfo uriInfo,
+                           @Context Request request,
                            @QueryParam("name") String name,
                            @QueryParam("minPrice") Double minPrice,
                            @QueryParam("maxPrice") Double maxPrice,
                            @QueryParam("page") @DefaultValue("1") int page,
-                           @QueryParam("perPage") @DefaultValue("2147483647") int perPage) {
+                           @QueryParam("perPage") @DefaultValue("2147483647") int perPage,
+                           @QueryParam("after") String after,
+                           @QueryParam("withTotal") @DefaultValue("false") boolean withTotal,
+                           @QueryParam("stream") @DefaultValue("false") boolean stream,
+                           @Suspended AsyncResponse async) {
 
         boolean inStockOnly = !securityContext.isUserInRole("employee");
 
-        logger.info("GET /beverages as " + (inStockOnly ? "customer" : "employee")
-                + " name=" + name + " min=" + minPrice + " max=" + maxPrice
-                + " page=" + page + " perPage=" + perPage);
+        log.info("GET /beverages", "role", inStockOnly ? "customer" : "employee",
+                "name", name, "min", minPrice, "max", maxPrice,
+                "page", page, "perPage", perPage, "after", after);
 
         if (page <= 0 || perPage <= 0) {
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity("Invalid page or perPage values").build();
+            async.resume(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid page or perPage values").build());
+            return;
+        }
+        // streaming writes straight from the cursor, so it is not bound by the page size cap
+        if (stream) {
+            MediaType type = JsonStreaming.negotiate(request);
+            async.resume(Response.ok(JsonStreaming.array(
+                    beverageService.iterate(inStockOnly, name, minPrice, maxPrice, Paging.skip(page, perPage), perPage),
+                    ub -> ub, type), type).build());
+            return;
+        }
+
+        // cursor mode: "?after=" starts at the first page, then follow the "next" link
+        if (after != null) {
+            async.resume(getAllAfter(uriInfo, inStockOnly, name, minPrice, maxPrice, after, perPage, withTotal));
+            return;
         }
 
-        BeverageDaoMongo.PagedResult<UnifiedBeverage> pr =
-                beverageService.getAll(inStockOnly, name, minPrice, maxPrice, page, perPage);
+        // count and page are read with the reactive driver; no thread waits for Mongo meanwhile
+        Async.resume(async, beverageService.getAllAsync(inStockOnly, name, minPrice, maxPrice, page, perPage).thenApply(pr -> {
+            if (pr.total == 0) {
+                return Response.status(Response.Status.NOT_FOUND).entity("No beverages found").build();
+            }
+            if (pr.items.isEmpty() && page > 1) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
+            }
+            return Response.ok(pr.items).build();
+        }));
+    }
+
+    private Response getAllAfter(UriInfo uriInfo, boolean inStockOnly, String name, Double minPrice,
+                                 Double maxPrice, String after, int perPage, boolean withTotal) {
+        BeverageCursor cursor;
+        try {
+            cursor = after.isEmpty() ? null : BeverageCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid cursor").build();
+        }
 
-        if (pr.total == 0) {
+        BeverageDaoMongo.CursorPage<UnifiedBeverage> cp =
+                beverageService.getPageAfter(inStockOnly, name, minPrice, maxPrice, cursor, perPage, withTotal);
+
+        if (cp.items.isEmpty() && cursor == null) {
             return Response.status(Response.Status.NOT_FOUND).entity("No beverages found").build();
         }
-        if (pr.items.isEmpty() && page > 1) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
+
+        Response.ResponseBuilder rb = Response.ok(cp.items);
+        if (cp.next != null) {
+            String next = uriInfo.getRequestUriBuilder()
+                    .replaceQueryParam("after", cp.next)
+                    .replaceQueryParam("page")
+                    .build().toString();
+            rb.header("Link", "<" + next + ">; rel=\"next\"");
         }
+        if (cp.total != null) rb.header("X-Total-Count", cp.total);
+        return rb.build();
+    }
 
-        return Response.ok(pr.items).build();
+    @POST
+    @Path("/rebuild")
+    public Response rebuild(@Context SecurityContext securityContext) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity("Access denied for non-employee users").build();
+        }
+        log.info("POST /beverages/rebuild");
+        int count = beverageProjector.rebuild();
+        return Response.ok("Rebuilt " + count + " beverages").build();
     }
 
     @GET
-    @Path("/bottle/{id}")
-    public Response getByBottleId(@PathParam("id") int id) throws CustomException {
-        logger.info("GET /beverages/bottle/" + id);
-        UnifiedBeverage dto = beverageService.getByBottleId(id);
-        if (dto == null) {
-            return Response.status(Response.Status.NOT_FOUND)
-                    .entity("Beverage with bottle ID " + id + " not found").build();
+    @Path("/suggest")
+    public Response suggest(@Context SecurityContext securityContext,
+                            @QueryParam("q") String q,
+                            @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (q == null || q.isBlank()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Query parameter q is required").build();
+        }
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("limit must be between 1 and " + MAX_SUGGESTIONS).build();
         }
-        return Response.ok(dto).build();
+        boolean inStockOnly = !securityContext.isUserInRole("employee");
+        log.info("GET /beverages/suggest", "q", q, "limit", limit);
+
+        List<NameIndex.Suggestion> suggestions = beverageService.suggest(q.trim(), limit, inStockOnly);
+        if (suggestions == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Name index is not loaded yet").build();
+        }
+        return Response.ok(suggestions).build();
+    }
+
+    @Versioned("beverages")
+    @GET
+    @Path("/bottle/{id}")
+    public void getByBottleId(@PathParam("id") int id, @Suspended AsyncResponse async) {
+        log.info("GET /beverages/bottle/{id}", "id", id);
+        Async.resume(async, beverageService.getByBottleIdAsync(id).thenApply(dto -> dto == null
+                ? Response.status(Response.Status.NOT_FOUND).entity("Beverage with bottle ID " + id + " not found").build()
+                : Response.ok(dto).build()));
     }
 }
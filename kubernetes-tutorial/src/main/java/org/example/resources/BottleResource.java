@@ -1,63 +1,99 @@
 package org.example.resources;
 
+import com.fasterxml.jackson.jakarta.rs.cbor.CBORMediaTypes;
+import com.fasterxml.jackson.jakarta.rs.smile.SmileMediaTypes;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.*;
+import org.example.caching.Versioned;
+import org.example.daos.Neighbours;
 import org.example.dto.bottleDTOs.NewBottle;
 import org.example.dto.bottleDTOs.SingleBottle;
+import org.example.dto.stockDTOs.StockAdjustment;
+import org.example.dto.stockDTOs.StockBatchResult;
+import org.example.logging.RequestLog;
 import org.example.model.Bottle;
 import org.example.model.exceptions.CustomException;
 import org.example.services.BottleService;
+import org.example.services.BulkImportService;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.logging.Logger;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Path("/bottles")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, CBORMediaTypes.APPLICATION_JACKSON_CBOR, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class BottleResource {
-    private static final Logger logger = Logger.getLogger("BottleResource");
+    private static final RequestLog log = RequestLog.get("BottleResource");
 
     @Inject
     BottleService bottleService;
 
+    @Inject
+    BulkImportService bulkImportService;
+
     @Context
     SecurityContext securityContext;
 
+    @Versioned("bottles")
     @GET
     public Response getBottles(@DefaultValue("1") @QueryParam("page") int page,
-                               @DefaultValue("2147483647") @QueryParam("perPage") int perPage) {
+                               @QueryParam("perPage") Integer perPage,
+                               @DefaultValue("false") @QueryParam("stream") boolean stream,
+                               @Context Request request,
+                               @Context UriInfo uriInfo) {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("Access denied for non-employee users").build();
         }
 
-        logger.info("GET /bottles page=" + page + " perPage=" + perPage);
+        log.info("GET /bottles", "page", page, "perPage", perPage, "stream", stream);
 
-        if (page <= 0 || perPage <= 0) {
+        if (page <= 0 || (perPage != null && perPage <= 0)) {
             return Response.status(Response.Status.BAD_REQUEST).entity("Invalid page or perPage values").build();
         }
 
-        List<Bottle> bottles = bottleService.getAll();
-        if (bottles.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No bottles found").build();
+        // streaming writes straight from the cursor, so it is not bound by the page size cap
+        if (stream) {
+            int limit = perPage == null ? Integer.MAX_VALUE : perPage;
+            MediaType type = JsonStreaming.negotiate(request);
+            return Response.ok(JsonStreaming.array(
+                    bottleService.iteratePage(Paging.skip(page, limit), limit), SingleBottle::of, type), type).build();
+        }
 
-        int start = (page - 1) * perPage;
-        if (start >= bottles.size()) return Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
+        if (perPage != null && perPage > Paging.MAX_PER_PAGE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("perPage must not exceed " + Paging.MAX_PER_PAGE).build();
+        }
 
-        int end = Math.min(start + perPage, bottles.size());
+        int limit = perPage == null ? Paging.MAX_PER_PAGE : perPage;
+        List<Bottle> bottles = bottleService.getPage(Paging.skip(page, limit), limit + 1);
+        String next = Paging.trimToPage(bottles, page, limit, uriInfo);
+        if (bottles.isEmpty()) {
+            return page == 1
+                    ? Response.status(Response.Status.NOT_FOUND).entity("No bottles found").build()
+                    : Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
+        }
 
-        List<SingleBottle> dtoList = bottles.subList(start, end).stream()
+        List<SingleBottle> dtoList = bottles.stream()
                 .map(SingleBottle::of)
                 .collect(Collectors.toList());
 
-        return Response.ok(dtoList).build();
+        Response.ResponseBuilder rb = Response.ok(dtoList);
+        if (next != null) rb.header("Link", next);
+        return rb.build();
     }
 
+    @Versioned("bottles")
     @GET
     @Path("/filter")
     public Response filterBottles(
@@ -65,7 +101,7 @@ public class BottleResource {
             @PositiveOrZero(message = "Lower bound must not be negative") @QueryParam("maxPrice") Double maxPrice,
             @QueryParam("name") String name) {
 
-        logger.info("GET /bottles/filter min=" + minPrice + " max=" + maxPrice + " name=" + name);
+        log.info("GET /bottles/filter", "min", minPrice, "max", maxPrice, "name", name);
 
         List<SingleBottle> filtered = bottleService.filter(minPrice, maxPrice, name).stream()
                 .map(SingleBottle::of).toList();
@@ -74,54 +110,63 @@ public class BottleResource {
         return Response.ok(filtered).build();
     }
 
+    @Versioned("bottles")
     @GET @Path("/alcoholic")
     public Response getAlcoholicBottles() {
-        logger.info("GET /bottles/alcoholic");
+        log.info("GET /bottles/alcoholic");
         var list = bottleService.getAlcoholicBottles().stream().map(SingleBottle::of).toList();
         if (list.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No alcoholic bottles found").build();
         return Response.ok(list).build();
     }
 
+    @Versioned("bottles")
     @GET @Path("/non-alcoholic")
     public Response getNonAlcoholicBottles() {
-        logger.info("GET /bottles/non-alcoholic");
+        log.info("GET /bottles/non-alcoholic");
         var list = bottleService.getNonAlcoholicBottles().stream().map(SingleBottle::of).toList();
         if (list.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No non-alcoholic bottles found").build();
         return Response.ok(list).build();
     }
 
+    @Versioned("bottles")
     @GET @Path("/in-stock")
     public Response getBottlesInStock() {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("Access denied for non-employee users").build();
         }
-        logger.info("GET /bottles/in-stock");
+        log.info("GET /bottles/in-stock");
         var list = bottleService.getBottlesInStock().stream().map(SingleBottle::of).toList();
         if (list.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No bottles in stock found").build();
         return Response.ok(list).build();
     }
 
+    @Versioned("bottles")
     @GET @Path("/id/{id}")
-    public Response getBottleById(@PathParam("id") int id, @Context UriInfo uriInfo) throws CustomException {
+    public void getBottleById(@PathParam("id") int id, @Context UriInfo uriInfo, @Suspended AsyncResponse async) {
         if (!securityContext.isUserInRole("employee")) {
-            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+            async.resume(Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build());
+            return;
         }
-        logger.info("GET /bottles/" + id);
-        Bottle bottle = bottleService.getById(id);
-        if (bottle == null) return Response.status(Response.Status.NOT_FOUND).entity("Bottle with ID " + id + " not found").build();
-        return buildResponseWithLinks(id, uriInfo);
+        log.info("GET /bottles/id/{id}", "id", id);
+        URI baseUri = uriInfo.getBaseUri();
+        Async.resume(async, bottleService.getWithNeighboursAsync(id).thenApply(found -> found == null
+                ? Response.status(Response.Status.NOT_FOUND).entity("Bottle with ID " + id + " not found").build()
+                : buildResponseWithLinks(found, baseUri)));
     }
 
+    @Versioned("bottles")
     @GET @Path("/name/{name}")
     public Response getBottleByName(@PathParam("name") String name, @Context UriInfo uriInfo) throws CustomException {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
         }
-        logger.info("GET /bottles/" + name);
+        log.info("GET /bottles/name/{name}", "name", name);
         Bottle bottle = bottleService.getByName(name);
         if (bottle == null) return Response.status(Response.Status.NOT_FOUND).entity("Bottle with name " + name + " not found").build();
-        return buildResponseWithLinks(bottle.getId(), uriInfo);
+        Neighbours<Bottle> found = bottleService.getWithNeighbours(bottle.getId());
+        if (found == null) return Response.status(Response.Status.NOT_FOUND).entity("Bottle with name " + name + " not found").build();
+        return buildResponseWithLinks(found, uriInfo.getBaseUri());
     }
 
     @POST
@@ -129,10 +174,10 @@ public class BottleResource {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
         }
-        logger.info("POST /bottles name=" + newBottle.getName());
+        log.info("POST /bottles", "name", newBottle.getName());
 
-        int nextId = bottleService.getSize() + 1; // or rely on DAO.nextId() by passing id=0
-        Bottle bottle = new Bottle(nextId, newBottle.getName(), newBottle.getVolume(),
+        // id 0 lets the DAO allocate a unique id
+        Bottle bottle = new Bottle(0, newBottle.getName(), newBottle.getVolume(),
                 newBottle.getIsAlcoholic(), newBottle.getVolumePercent(), newBottle.getPrice(),
                 newBottle.getSupplier(), newBottle.getInStock());
 
@@ -140,12 +185,25 @@ public class BottleResource {
         return Response.status(Response.Status.CREATED).entity(created).build();
     }
 
+    // Accepts NDJSON or a JSON array; answers with one NDJSON result line per item
+    @POST @Path("/bulk")
+    @Consumes({"application/x-ndjson", MediaType.APPLICATION_JSON})
+    @Produces("application/x-ndjson")
+    public Response addBottlesBulk(InputStream body, @DefaultValue("0") @QueryParam("batchSize") int batchSize) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+        }
+        int size = batchSize <= 0 ? BulkImportService.DEFAULT_BATCH_SIZE : Math.min(batchSize, BulkImportService.MAX_BATCH_SIZE);
+        log.info("POST /bottles/bulk", "batchSize", size);
+        return Response.ok(JsonStreaming.ndjson(sink -> bulkImportService.importBottles(body, size, sink))).build();
+    }
+
     @PUT @Path("/{id}")
     public Response updateBottle(@PathParam("id") int id, @Valid @NotNull NewBottle newBottle) throws CustomException {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
         }
-        logger.info("PUT /bottles/" + id + " name=" + newBottle.getName());
+        log.info("PUT /bottles/{id}", "id", id, "name", newBottle.getName());
 
         Bottle existing = bottleService.getById(id);
         if (existing == null) return Response.status(Response.Status.NOT_FOUND).entity("Bottle with id " + id + " not found").build();
@@ -158,12 +216,57 @@ public class BottleResource {
         return Response.ok(SingleBottle.of(updated)).build();
     }
 
+    // Relative stock change in one atomic $inc; 409 when it would take stock below zero
+    @PATCH @Path("/{id}/stock")
+    public Response adjustBottleStock(@PathParam("id") int id, @Valid @NotNull StockAdjustment adjustment) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+        }
+        log.info("PATCH /bottles/{id}/stock", "id", id, "delta", adjustment.getDelta());
+
+        Bottle updated = bottleService.adjustStock(id, adjustment.getDelta());
+        if (updated != null) return Response.ok(SingleBottle.of(updated)).build();
+        if (!bottleService.exists(id)) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Bottle with id " + id + " not found").build();
+        }
+        return Response.status(Response.Status.CONFLICT).entity("Insufficient stock for bottle with id " + id).build();
+    }
+
+    // Deltas for the same id are summed; skipped adjustments are reported only as a count
+    @PATCH @Path("/stock")
+    public Response adjustBottleStockBatch(@Valid @NotNull List<@Valid @NotNull StockAdjustment> adjustments) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+        }
+        log.info("PATCH /bottles/stock", "count", adjustments.size());
+
+        if (adjustments.isEmpty() || adjustments.size() > BulkImportService.MAX_BATCH_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Between 1 and " + BulkImportService.MAX_BATCH_SIZE + " adjustments are allowed").build();
+        }
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        for (StockAdjustment a : adjustments) {
+            if (a.getId() == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Every adjustment needs an id").build();
+            }
+            try {
+                deltas.merge(a.getId(), a.getDelta(), Math::addExact);
+            } catch (ArithmeticException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Summed delta for ID " + a.getId() + " is out of range").build();
+            }
+        }
+
+        int applied = bottleService.adjustStockAll(deltas);
+        return Response.ok(new StockBatchResult(deltas.size(), applied)).build();
+    }
+
     @DELETE @Path("/{id}")
     public Response deleteBottle(@PathParam("id") int id) throws CustomException {
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
         }
-        logger.info("DELETE /bottles/" + id);
+        log.info("DELETE /bottles/{id}", "id", id);
         Bottle existing = bottleService.getById(id);
         if (existing == null) return Response.status(Response.Status.NOT_FOUND).entity("Bottle with id " + id + " not found").build();
         bottleService.deleteById(id);
@@ -171,29 +274,15 @@ public class BottleResource {
     }
 
     // ---------- Utility ----------
-    private Response buildResponseWithLinks(int id, UriInfo uriInfo) throws CustomException {
-        Bottle bottle = bottleService.getById(id);
-
-        String self = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(BottleResource.class).path(BottleResource.class, "getBottleById").build(id).toString();
-        String prev = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(BottleResource.class).path(BottleResource.class, "getBottleById").build(id - 1).toString();
-        String next = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(BottleResource.class).path(BottleResource.class, "getBottleById").build(id + 1).toString();
-
-        Optional<Bottle> prevBottle = bottleService.getById(id - 1) != null ? Optional.of(bottleService.getById(id - 1)) : Optional.empty();
-        Optional<Bottle> nextBottle = bottleService.getById(id + 1) != null ? Optional.of(bottleService.getById(id + 1)) : Optional.empty();
-
-        Response.ResponseBuilder rb = Response.ok(SingleBottle.of(bottle));
-        if (prevBottle.isPresent() && nextBottle.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + prev + ">; rel=\"prev\", <" + next + ">; rel=\"next\"");
-        } else if (prevBottle.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + prev + ">; rel=\"prev\"");
-        } else if (nextBottle.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + next + ">; rel=\"next\"");
-        } else {
-            rb.header("Link", "<" + self + ">; rel=\"self\"");
-        }
-        return rb.build();
+    // prev/next point at the nearest existing ids, so gaps left by deletes are skipped
+    private Response buildResponseWithLinks(Neighbours<Bottle> found, URI baseUri) {
+        UriBuilder byId = UriBuilder.fromUri(baseUri)
+                .path(BottleResource.class).path(BottleResource.class, "getBottleById");
+
+        StringBuilder links = new StringBuilder("<" + byId.build(found.item.getId()) + ">; rel=\"self\"");
+        if (found.prevId != null) links.append(", <").append(byId.build(found.prevId)).append(">; rel=\"prev\"");
+        if (found.nextId != null) links.append(", <").append(byId.build(found.nextId)).append(">; rel=\"next\"");
+
+        return Response.ok(SingleBottle.of(found.item)).header("Link", links.toString()).build();
     }
 }
\ No newline at end of file
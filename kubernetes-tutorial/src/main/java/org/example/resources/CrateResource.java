@@ -1,63 +1,102 @@
 package org.example.resources;
 
+import com.fasterxml.jackson.jakarta.rs.cbor.CBORMediaTypes;
+import com.fasterxml.jackson.jakarta.rs.smile.SmileMediaTypes;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.*;
+import org.example.caching.Versioned;
+import org.example.daos.CrateDaoMongo.CrateRecord;
+import org.example.daos.Neighbours;
 import org.example.dto.crateDTOs.NewCrate;
 import org.example.dto.crateDTOs.SingleCrate;
+import org.example.dto.stockDTOs.StockAdjustment;
+import org.example.dto.stockDTOs.StockBatchResult;
+import org.example.logging.RequestLog;
 import org.example.model.Bottle;
 import org.example.model.Crate;
 import org.example.services.BottleService;
+import org.example.services.BulkImportService;
 import org.example.services.CrateService;
 
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.logging.Logger;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Path("/crates")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, CBORMediaTypes.APPLICATION_JACKSON_CBOR, SmileMediaTypes.APPLICATION_JACKSON_SMILE})
 @Consumes(MediaType.APPLICATION_JSON)
 public class CrateResource {
 
-    private static final Logger logger = Logger.getLogger("CrateResource");
+    private static final RequestLog log = RequestLog.get("CrateResource");
 
     @Inject CrateService crateService;
     @Inject BottleService bottleService;
+    @Inject BulkImportService bulkImportService;
 
     @Context SecurityContext securityContext;
 
+    @Versioned({"crates", "bottles"})
     @GET
-    public Response getAllCrates(@DefaultValue("1") @QueryParam("page") int page,
-                                 @DefaultValue("2147483647") @QueryParam("perPage") int perPage) {
+    public void getAllCrates(@DefaultValue("1") @QueryParam("page") int page,
+                             @QueryParam("perPage") Integer perPage,
+                             @DefaultValue("false") @QueryParam("stream") boolean stream,
+                             @Context Request request,
+                             @Context UriInfo uriInfo,
+                             @Suspended AsyncResponse async) {
         if (!securityContext.isUserInRole("employee")) {
-            return Response.status(Response.Status.FORBIDDEN)
-                    .entity("Access denied for non-employee users").build();
+            async.resume(Response.status(Response.Status.FORBIDDEN)
+                    .entity("Access denied for non-employee users").build());
+            return;
         }
 
-        logger.info("GET /crates page=" + page + " perPage=" + perPage);
+        log.info("GET /crates", "page", page, "perPage", perPage, "stream", stream);
 
-        if (page <= 0 || perPage <= 0) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("Invalid page or perPage values").build();
+        if (page <= 0 || (perPage != null && perPage <= 0)) {
+            async.resume(Response.status(Response.Status.BAD_REQUEST).entity("Invalid page or perPage values").build());
+            return;
         }
 
-        List<Crate> crates = crateService.getAll();
-        if (crates.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No crates found").build();
-
-        int start = (page - 1) * perPage;
-        if (start >= crates.size()) return Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
-
-        int end = Math.min(start + perPage, crates.size());
+        // streaming writes straight from the cursor, so it is not bound by the page size cap
+        if (stream) {
+            int limit = perPage == null ? Integer.MAX_VALUE : perPage;
+            MediaType type = JsonStreaming.negotiate(request);
+            async.resume(Response.ok(JsonStreaming.array(
+                    crateService.iteratePage(Paging.skip(page, limit), limit), SingleCrate::of, type), type).build());
+            return;
+        }
 
-        List<SingleCrate> dtoList = crates.subList(start, end).stream()
-                .map(SingleCrate::of)
-                .collect(Collectors.toList());
+        if (perPage != null && perPage > Paging.MAX_PER_PAGE) {
+            async.resume(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("perPage must not exceed " + Paging.MAX_PER_PAGE).build());
+            return;
+        }
 
-        return Response.ok(dtoList).build();
+        int limit = perPage == null ? Paging.MAX_PER_PAGE : perPage;
+        // the page is read with the reactive driver; no thread waits for Mongo meanwhile
+        Async.resume(async, crateService.getPageAsync(Paging.skip(page, limit), limit + 1).thenApply(crates -> {
+            String next = Paging.trimToPage(crates, page, limit, uriInfo);
+            if (crates.isEmpty()) {
+                return page == 1
+                        ? Response.status(Response.Status.NOT_FOUND).entity("No crates found").build()
+                        : Response.status(Response.Status.BAD_REQUEST).entity("Page number out of range").build();
+            }
+            List<SingleCrate> dtoList = crates.stream()
+                    .map(SingleCrate::of)
+                    .collect(Collectors.toList());
+            Response.ResponseBuilder rb = Response.ok(dtoList);
+            if (next != null) rb.header("Link", next);
+            return rb.build();
+        }));
     }
 
+    @Versioned({"crates", "bottles"})
     @GET @Path("/filter")
     public Response filterCrates(@QueryParam("minPrice") Double minPrice,
                                  @QueryParam("maxPrice") Double maxPrice,
@@ -67,7 +106,7 @@ public class CrateResource {
                     .entity("Access denied for non-employee users").build();
         }
 
-        logger.info("GET /crates/filter min=" + minPrice + " max=" + maxPrice + " name=" + name);
+        log.info("GET /crates/filter", "min", minPrice, "max", maxPrice, "name", name);
 
         List<Crate> crates = crateService.filter(minPrice, maxPrice, name);
         if (crates.isEmpty()) return Response.status(Response.Status.NOT_FOUND).entity("No matching crates").build();
@@ -76,22 +115,24 @@ public class CrateResource {
         return Response.ok(result).build();
     }
 
+    @Versioned({"crates", "bottles"})
     @GET @Path("id/{id}")
     public Response getCrateById(@PathParam("id") int id, @Context UriInfo uriInfo) {
-        logger.info("GET /crates/id/" + id);
+        log.info("GET /crates/id/{id}", "id", id);
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("Access denied for non-employee users").build();
         }
 
-        Crate crate = crateService.getById(id);
-        if (crate == null) return Response.status(Response.Status.NOT_FOUND).entity("Crate with ID " + id + " not found").build();
-        return buildResponseWithLinks(id, uriInfo);
+        Neighbours<Crate> found = crateService.getWithNeighbours(id);
+        if (found == null) return Response.status(Response.Status.NOT_FOUND).entity("Crate with ID " + id + " not found").build();
+        return buildResponseWithLinks(found, uriInfo);
     }
 
+    @Versioned({"crates", "bottles"})
     @GET @Path("name/{name}")
     public Response getCrateByName(@PathParam("name") String name, @Context UriInfo uriInfo) {
-        logger.info("GET /crates/name/" + name);
+        log.info("GET /crates/name/{name}", "name", name);
         if (!securityContext.isUserInRole("employee")) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("Access denied for non-employee users").build();
@@ -99,7 +140,9 @@ public class CrateResource {
 
         Crate crate = crateService.getByName(name);
         if (crate == null) return Response.status(Response.Status.NOT_FOUND).entity("Crate with name " + name + " not found").build();
-        return buildResponseWithLinks(crate.getId(), uriInfo);
+        Neighbours<Crate> found = crateService.getWithNeighbours(crate.getId());
+        if (found == null) return Response.status(Response.Status.NOT_FOUND).entity("Crate with name " + name + " not found").build();
+        return buildResponseWithLinks(found, uriInfo);
     }
 
     @POST
@@ -109,43 +152,98 @@ public class CrateResource {
                     .entity("Access denied for non-employee users").build();
         }
 
-        logger.info("POST /crates");
+        log.info("POST /crates", "bottleId", newCrate.getBottleId());
         Bottle bottle = bottleService.getById(newCrate.getBottleId());
         if (bottle == null) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("Bottle with ID " + newCrate.getBottleId() + " not found").build();
         }
 
-        int nextId = crateService.getSize() + 1; // or let DAO assign by sending 0
-        Crate crate = new Crate(nextId, bottle, newCrate.getNoOfBottles(), newCrate.getPrice(), newCrate.getInStock());
+        // id 0 lets the DAO allocate a unique id
+        Crate crate = new Crate(0, bottle, newCrate.getNoOfBottles(), newCrate.getPrice(), newCrate.getInStock());
 
         Crate created = crateService.add(crate);
         return Response.status(Response.Status.CREATED).entity(created).build();
     }
 
-    private Response buildResponseWithLinks(int id, UriInfo uriInfo) {
-        Crate crate = crateService.getById(id);
-
-        String self = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(CrateResource.class).path(CrateResource.class, "getCrateById").build(id).toString();
-        String prev = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(CrateResource.class).path(CrateResource.class, "getCrateById").build(id - 1).toString();
-        String next = UriBuilder.fromUri(uriInfo.getBaseUri())
-                .path(CrateResource.class).path(CrateResource.class, "getCrateById").build(id + 1).toString();
-
-        Optional<Crate> prevCrate = Optional.ofNullable(crateService.getById(id - 1));
-        Optional<Crate> nextCrate = Optional.ofNullable(crateService.getById(id + 1));
-
-        Response.ResponseBuilder rb = Response.ok(SingleCrate.of(crate));
-        if (prevCrate.isPresent() && nextCrate.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + prev + ">; rel=\"prev\", <" + next + ">; rel=\"next\"");
-        } else if (prevCrate.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + prev + ">; rel=\"prev\"");
-        } else if (nextCrate.isPresent()) {
-            rb.header("Link", "<" + self + ">; rel=\"self\", <" + next + ">; rel=\"next\"");
-        } else {
-            rb.header("Link", "<" + self + ">; rel=\"self\"");
-        }
-        return rb.build();
+    // Accepts NDJSON or a JSON array; answers with one NDJSON result line per item
+    @POST @Path("/bulk")
+    @Consumes({"application/x-ndjson", MediaType.APPLICATION_JSON})
+    @Produces("application/x-ndjson")
+    public Response addCratesBulk(InputStream body, @DefaultValue("0") @QueryParam("batchSize") int batchSize) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN)
+                    .entity("Access denied for non-employee users").build();
+        }
+        int size = batchSize <= 0 ? BulkImportService.DEFAULT_BATCH_SIZE : Math.min(batchSize, BulkImportService.MAX_BATCH_SIZE);
+        log.info("POST /crates/bulk", "batchSize", size);
+        return Response.ok(JsonStreaming.ndjson(sink -> bulkImportService.importCrates(body, size, sink))).build();
+    }
+
+    // Relative stock change in one atomic $inc; 409 when it would take stock below zero
+    @PATCH @Path("/{id}/stock")
+    public Response adjustCrateStock(@PathParam("id") int id, @Valid @NotNull StockAdjustment adjustment) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+        }
+        log.info("PATCH /crates/{id}/stock", "id", id, "delta", adjustment.getDelta());
+
+        CrateRecord updated = crateService.adjustStock(id, adjustment.getDelta());
+        if (updated != null) {
+            // the $inc has been applied; an orphaned crate is answered without a bottle name, never with 409
+            Bottle bottle = bottleService.getById(updated.bottleId);
+            SingleCrate dto = new SingleCrate();
+            dto.setId(updated.id);
+            dto.setBottleName(bottle == null ? null : bottle.getName());
+            dto.setNoOfBottles(updated.bottlesPerCrate);
+            dto.setPrice(updated.price);
+            dto.setInStock(updated.inStock);
+            return Response.ok(dto).build();
+        }
+        if (!crateService.exists(id)) {
+            return Response.status(Response.Status.NOT_FOUND).entity("Crate with id " + id + " not found").build();
+        }
+        return Response.status(Response.Status.CONFLICT).entity("Insufficient stock for crate with id " + id).build();
+    }
+
+    // Deltas for the same id are summed; skipped adjustments are reported only as a count
+    @PATCH @Path("/stock")
+    public Response adjustCrateStockBatch(@Valid @NotNull List<@Valid @NotNull StockAdjustment> adjustments) {
+        if (!securityContext.isUserInRole("employee")) {
+            return Response.status(Response.Status.FORBIDDEN).entity("Access denied for non-employee users").build();
+        }
+        log.info("PATCH /crates/stock", "count", adjustments.size());
+
+        if (adjustments.isEmpty() || adjustments.size() > BulkImportService.MAX_BATCH_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Between 1 and " + BulkImportService.MAX_BATCH_SIZE + " adjustments are allowed").build();
+        }
+        Map<Integer, Integer> deltas = new LinkedHashMap<>();
+        for (StockAdjustment a : adjustments) {
+            if (a.getId() == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity("Every adjustment needs an id").build();
+            }
+            try {
+                deltas.merge(a.getId(), a.getDelta(), Math::addExact);
+            } catch (ArithmeticException e) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("Summed delta for ID " + a.getId() + " is out of range").build();
+            }
+        }
+
+        int applied = crateService.adjustStockAll(deltas);
+        return Response.ok(new StockBatchResult(deltas.size(), applied)).build();
+    }
+
+    // prev/next point at the nearest existing crates, so gaps left by deletes are skipped
+    private Response buildResponseWithLinks(Neighbours<Crate> found, UriInfo uriInfo) {
+        UriBuilder byId = UriBuilder.fromUri(uriInfo.getBaseUri())
+                .path(CrateResource.class).path(CrateResource.class, "getCrateById");
+
+        StringBuilder links = new StringBuilder("<" + byId.build(found.item.getId()) + ">; rel=\"self\"");
+        if (found.prevId != null) links.append(", <").append(byId.build(found.prevId)).append(">; rel=\"prev\"");
+        if (found.nextId != null) links.append(", <").append(byId.build(found.nextId)).append(">; rel=\"next\"");
+
+        return Response.ok(SingleCrate.of(found.item)).header("Link", links.toString()).build();
     }
 }
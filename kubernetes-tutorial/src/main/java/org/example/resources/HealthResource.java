@@ -1,20 +1,30 @@
 package org.example.resources;
 
+import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.example.db.HealthProber;
 
 @Path("/")
 public class HealthResource {
-    // Readiness: return 200 when the app is ready to serve
+
+    @Inject
+    HealthProber healthProber;
+
+    // Readiness: return 200 when the app is ready to serve. Answered from the
+    // prober's cached Mongo ping and pool state, so the probe never hits Mongo itself.
     @GET
     @Path("health")
     @Produces(MediaType.TEXT_PLAIN)
     public Response health() {
-        // Keep it simple for now; later you can check DBs, downstreams, etc.
-        return Response.ok("ok").build();
+        HealthProber.Status status = healthProber.current();
+        if (!status.ready) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(status.toString()).build();
+        }
+        return Response.ok(status.toString()).build();
     }
 
     // Liveness: return 200 if the JVM/process is healthy
@@ -0,0 +1,117 @@
+package org.example.resources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jakarta.rs.cbor.CBORMediaTypes;
+import com.fasterxml.jackson.jakarta.rs.smile.SmileMediaTypes;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.core.Variant;
+import org.example.dto.bulkDTOs.BulkItemResult;
+import org.example.services.BulkImportService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes an array straight from a Mongo cursor. Documents are pulled and mapped
+ * in small chunks and flushed as they are written, so memory stays constant no matter
+ * how many documents the query returns. The array is encoded as JSON, CBOR or Smile,
+ * whichever the client negotiated.
+ */
+final class JsonStreaming {
+
+    private static final int CHUNK = Integer.parseInt(System.getenv().getOrDefault("STREAM_CHUNK_SIZE", "100"));
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory())
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory())
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    /** Must match the media types the streaming resource methods @Produce. */
+    private static final List<Variant> VARIANTS = Variant.mediaTypes(
+            MediaType.APPLICATION_JSON_TYPE,
+            CBORMediaTypes.APPLICATION_JACKSON_CBOR_TYPE,
+            SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE).build();
+
+    private JsonStreaming() {}
+
+    /** The streaming format for this request's Accept header; JSON when nothing else matches. */
+    static MediaType negotiate(Request request) {
+        Variant v = request.selectVariant(VARIANTS);
+        return v == null ? MediaType.APPLICATION_JSON_TYPE : v.getMediaType();
+    }
+
+    static <T> StreamingOutput array(MongoIterable<T> source, Function<? super T, ?> mapper, MediaType type) {
+        return chunkedArray(source, chunk -> {
+            List<Object> out = new ArrayList<>(chunk.size());
+            for (T t : chunk) out.add(mapper.apply(t));
+            return out;
+        }, type);
+    }
+
+    /** Like {@link #array} but maps a whole chunk at once, e.g. to batch-load related entities. */
+    static <T> StreamingOutput chunkedArray(MongoIterable<T> source, Function<List<T>, List<?>> chunkMapper,
+                                            MediaType type) {
+        JsonFactory factory = factoryFor(type);
+        return out -> {
+            try (MongoCursor<T> cursor = source.batchSize(CHUNK).iterator();
+                 JsonGenerator gen = factory.createGenerator(out)) {
+                gen.writeStartArray();
+                List<T> chunk = new ArrayList<>(CHUNK);
+                while (cursor.hasNext()) {
+                    chunk.add(cursor.next());
+                    if (chunk.size() == CHUNK) {
+                        writeChunk(gen, chunkMapper.apply(chunk));
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) writeChunk(gen, chunkMapper.apply(chunk));
+                gen.writeEndArray();
+            }
+        };
+    }
+
+    interface NdjsonBody {
+        void write(BulkImportService.ResultSink sink) throws IOException;
+    }
+
+    /** Newline-delimited JSON: one result object per line, flushed whenever the producer asks. */
+    static StreamingOutput ndjson(NdjsonBody body) {
+        return out -> {
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                gen.setRootValueSeparator(null);
+                body.write(new BulkImportService.ResultSink() {
+                    @Override public void write(BulkItemResult result) throws IOException {
+                        gen.writeObject(result);
+                        gen.writeRaw('\n');
+                    }
+                    @Override public void flush() throws IOException {
+                        gen.flush();
+                    }
+                });
+            }
+        };
+    }
+
+    private static JsonFactory factoryFor(MediaType type) {
+        if (type.isCompatible(CBORMediaTypes.APPLICATION_JACKSON_CBOR_TYPE)) return CBOR_MAPPER.getFactory();
+        if (type.isCompatible(SmileMediaTypes.APPLICATION_JACKSON_SMILE_TYPE)) return SMILE_MAPPER.getFactory();
+        return MAPPER.getFactory();
+    }
+
+    private static void writeChunk(JsonGenerator gen, List<?> items) throws IOException {
+        for (Object item : items) gen.writeObject(item);
+        gen.flush();
+    }
+}
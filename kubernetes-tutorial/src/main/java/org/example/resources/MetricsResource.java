@@ -0,0 +1,29 @@
+package org.example.resources;
+
+import io.prometheus.client.exporter.common.TextFormat;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.example.metrics.Metrics;
+
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@Path("/metrics")
+public class MetricsResource {
+
+    // Prometheus scrape endpoint (text exposition format 0.0.4)
+    @GET
+    @Produces(TextFormat.CONTENT_TYPE_004)
+    public Response metrics() {
+        StreamingOutput body = out -> {
+            Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            TextFormat.write004(w, Metrics.registry().metricFamilySamples());
+            w.flush();
+        };
+        return Response.ok(body).build();
+    }
+}
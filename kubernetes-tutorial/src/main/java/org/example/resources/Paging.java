@@ -0,0 +1,29 @@
+package org.example.resources;
+
+import jakarta.ws.rs.core.UriInfo;
+
+import java.util.List;
+
+final class Paging {
+    /** Largest (and default) perPage on list endpoints, so one request can't pull the whole catalog. */
+    static final int MAX_PER_PAGE = Integer.parseInt(System.getenv().getOrDefault("MAX_PER_PAGE", "1000"));
+
+    private Paging() {}
+
+    static int skip(int page, int perPage) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) (page - 1) * perPage);
+    }
+
+    /**
+     * Pages are fetched with one extra item, which tells whether a next page exists. Trims the
+     * extra item off and returns the "next" Link value, or null on the last page.
+     */
+    static <T> String trimToPage(List<T> fetched, int page, int perPage, UriInfo uriInfo) {
+        if (fetched.size() <= perPage) return null;
+        fetched.subList(perPage, fetched.size()).clear();
+        return "<" + uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("page", page + 1)
+                .replaceQueryParam("perPage", perPage)
+                .build() + ">; rel=\"next\"";
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.search;
+
+import jakarta.inject.Singleton;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory index over beverage names, keyed by bottle id, answering case-insensitive
+ * substring and prefix queries without touching Mongo. Substring queries intersect trigram
+ * posting lists (queries shorter than three characters scan the names, which is still cheap
+ * at catalog size); prefix queries walk a sorted map of names. Candidates are always checked
+ * against the stored name, so a concurrent update can delay a match but never add a wrong one.
+ *
+ * Kept current by BeverageProjector on every write and reloaded by {@link SearchIndexLoader}.
+ */
+@Singleton
+public class NameIndex {
+
+    public static final class Suggestion {
+        public final int bottleId;
+        public final String name;
+        Suggestion(int bottleId, String name) {
+            this.bottleId = bottleId; this.name = name;
+        }
+    }
+
+    private static final class Entry {
+        final String name; final String key; final boolean inStock;
+        Entry(String name, boolean inStock) {
+            this.name = name; this.key = normalize(name); this.inStock = inStock;
+        }
+    }
+
+    private static final class Postings {
+        final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+        final Map<String, Set<Integer>> trigrams = new ConcurrentHashMap<>();
+        // normalized name + '\0' + id, so equal names stay distinct and sort together
+        final NavigableMap<String, Integer> sorted = new ConcurrentSkipListMap<>();
+    }
+
+    // above this many ids a $in list costs more than the scan it replaces; shared with PriceIndex callers
+    public static final int MAX_RESOLVED_IDS = Integer.parseInt(System.getenv().getOrDefault("SEARCH_INDEX_MAX_IDS", "5000"));
+
+    private volatile Postings postings = new Postings();
+    private volatile boolean ready;
+    final TouchedIds touched = new TouchedIds();
+
+    /** False until the first full load; callers fall back to querying Mongo until then. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return postings.entries.size();
+    }
+
+    /** Replaces the whole index, e.g. after a reload from the beverages collection. */
+    public void replaceAll(Iterable<UnifiedBeverage> beverages) {
+        Postings fresh = new Postings();
+        for (UnifiedBeverage ub : beverages) put(fresh, ub);
+        postings = fresh;
+        ready = true;
+    }
+
+    public void put(UnifiedBeverage ub) {
+        touched.add(ub.getBottleId());
+        put(postings, ub);
+    }
+
+    public void remove(Collection<Integer> bottleIds) {
+        touched.addAll(bottleIds);
+        Postings p = postings;
+        for (Integer id : bottleIds) remove(p, id);
+    }
+
+    /** Applies a re-read of touched ids after a reload; not tracked itself, see {@link TouchedIds}. */
+    void reapply(Collection<UnifiedBeverage> fresh, Collection<Integer> gone) {
+        Postings p = postings;
+        for (UnifiedBeverage ub : fresh) put(p, ub);
+        for (Integer id : gone) remove(p, id);
+    }
+
+    /** Drops every entry whose bottle is not in {@code bottleIds}; used after a full rebuild. */
+    public void retainOnly(Collection<Integer> bottleIds) {
+        Set<Integer> keep = new HashSet<>(bottleIds);
+        Postings p = postings;
+        for (Integer id : List.copyOf(p.entries.keySet())) {
+            if (keep.contains(id)) continue;
+            touched.add(id);
+            remove(p, id);
+        }
+    }
+
+    /**
+     * The bottle ids to query for a name search, or null when the caller should fall back to
+     * the regex: no name given, index not loaded yet, or too many matches to be worth it.
+     */
+    public Set<Integer> resolve(String name) {
+        if (name == null || name.isBlank() || !ready) return null;
+        Set<Integer> ids = matching(name);
+        return ids.size() > MAX_RESOLVED_IDS ? null : ids;
+    }
+
+    /** Bottle ids whose name contains {@code query}, ignoring case. */
+    public Set<Integer> matching(String query) {
+        String q = normalize(query);
+        Postings p = postings;
+        Set<Integer> out = new HashSet<>();
+        if (q.length() < 3) {
+            p.entries.forEach((id, e) -> { if (e.key.contains(q)) out.add(id); });
+            return out;
+        }
+        Set<Integer> smallest = null;
+        for (String gram : trigrams(q)) {
+            Set<Integer> ids = p.trigrams.get(gram);
+            if (ids == null) return out;
+            if (smallest == null || ids.size() < smallest.size()) smallest = ids;
+        }
+        for (Integer id : smallest) {
+            Entry e = p.entries.get(id);
+            if (e != null && e.key.contains(q)) out.add(id);
+        }
+        return out;
+    }
+
+    /**
+     * Up to {@code limit} names for autocomplete: names starting with {@code query} first,
+     * then names containing it, each group in name order.
+     */
+    public List<Suggestion> suggest(String query, int limit, boolean inStockOnly) {
+        String q = normalize(query);
+        Postings p = postings;
+        List<Suggestion> out = new ArrayList<>(limit);
+        Set<Integer> taken = new HashSet<>();
+        for (Integer id : p.sorted.subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+            if (out.size() == limit) return out;
+            Entry e = p.entries.get(id);
+            if (e == null || !e.key.startsWith(q) || (inStockOnly && !e.inStock)) continue;
+            out.add(new Suggestion(id, e.name));
+            taken.add(id);
+        }
+        // same "key\0id" order as the prefix map, found by the trigram lookup instead of a range scan
+        NavigableMap<String, Suggestion> contained = new TreeMap<>();
+        for (Integer id : matching(q)) {
+            Entry e = p.entries.get(id);
+            if (e == null || taken.contains(id) || (inStockOnly && !e.inStock)) continue;
+            contained.put(e.key + '\0' + id, new Suggestion(id, e.name));
+            if (contained.size() > limit) contained.pollLastEntry();
+        }
+        for (Suggestion s : contained.values()) {
+            if (out.size() == limit) break;
+            out.add(s);
+        }
+        return out;
+    }
+
+    private static void put(Postings p, UnifiedBeverage ub) {
+        if (ub.getName() == null) {
+            remove(p, ub.getBottleId());
+            return;
+        }
+        Integer crates = ub.getTotalBottlesInCrates();
+        Entry e = new Entry(ub.getName(), ub.getBottlesInStock() > 0 || (crates != null && crates > 0));
+        Entry old = p.entries.put(ub.getBottleId(), e);
+        if (old != null && !old.key.equals(e.key)) unlink(p, ub.getBottleId(), old);
+        p.sorted.put(e.key + '\0' + ub.getBottleId(), ub.getBottleId());
+        for (String gram : trigrams(e.key)) {
+            p.trigrams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(ub.getBottleId());
+        }
+    }
+
+    private static void remove(Postings p, int id) {
+        Entry old = p.entries.remove(id);
+        if (old != null) unlink(p, id, old);
+    }
+
+    private static void unlink(Postings p, int id, Entry old) {
+        p.sorted.remove(old.key + '\0' + id);
+        for (String gram : trigrams(old.key)) {
+            Set<Integer> ids = p.trigrams.get(gram);
+            if (ids != null) ids.remove(id);
+        }
+    }
+
+    private static List<String> trigrams(String key) {
+        List<String> out = new ArrayList<>(Math.max(0, key.length() - 2));
+        for (int i = 0; i + 3 <= key.length(); i++) out.add(key.substring(i, i + 3));
+        return out;
+    }
+
+    static String normalize(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.search;
+
+import jakarta.inject.Singleton;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * In-memory price index over the beverages read model: one entry per bottle price and one per
+ * crate price, held in parallel primitive arrays sorted by price. A price range is two binary
+ * searches and a walk that sets the bottle ids in between in a bitmap, which callers AND with
+ * {@link #inStock()} and the name matches. This is the same "any of the prices is in range"
+ * test as the $or over pricePerBottle, pricePerCrate and price in BeverageDaoMongo.
+ *
+ * Snapshots are immutable and replaced copy-on-write, so readers never lock; writes rebuild the
+ * arrays in one merge pass. Fed by BeverageProjector and {@link SearchIndexLoader} like {@link NameIndex}.
+ */
+@Singleton
+public class PriceIndex {
+
+    private static final class Snapshot {
+        final double[] prices;
+        final int[] ids;
+        final BitSet inStock;
+        final BitSet present;
+        Snapshot(double[] prices, int[] ids, BitSet inStock, BitSet present) {
+            this.prices = prices; this.ids = ids; this.inStock = inStock; this.present = present;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new double[0], new int[0], new BitSet(), new BitSet());
+    private volatile boolean ready;
+    final TouchedIds touched = new TouchedIds();
+
+    /** False until the first full load; callers fall back to the Mongo $or until then. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Number of price entries (a bottle sold in a crate has two). */
+    public int size() {
+        return snapshot.prices.length;
+    }
+
+    public synchronized void replaceAll(Iterable<UnifiedBeverage> beverages) {
+        Builder b = new Builder(1024);
+        BitSet inStock = new BitSet();
+        BitSet present = new BitSet();
+        for (UnifiedBeverage ub : beverages) b.add(ub, inStock, present);
+        snapshot = b.sorted(inStock, present);
+        ready = true;
+    }
+
+    /** Replaces the entries of the given bottles. */
+    public synchronized void putAll(Collection<UnifiedBeverage> beverages) {
+        for (UnifiedBeverage ub : beverages) touched.add(ub.getBottleId());
+        apply(beverages);
+    }
+
+    public synchronized void remove(Collection<Integer> bottleIds) {
+        touched.addAll(bottleIds);
+        drop(bottleIds);
+    }
+
+    /** Applies a re-read of touched ids after a reload; not tracked itself, see {@link TouchedIds}. */
+    synchronized void reapply(Collection<UnifiedBeverage> fresh, Collection<Integer> gone) {
+        apply(fresh);
+        drop(gone);
+    }
+
+    private void apply(Collection<UnifiedBeverage> beverages) {
+        if (beverages.isEmpty()) return;
+        Snapshot old = snapshot;
+        BitSet replaced = new BitSet();
+        BitSet inStock = (BitSet) old.inStock.clone();
+        BitSet present = (BitSet) old.present.clone();
+        Builder fresh = new Builder(beverages.size() * 2);
+        for (UnifiedBeverage ub : beverages) {
+            replaced.set(ub.getBottleId());
+            inStock.clear(ub.getBottleId());
+            fresh.add(ub, inStock, present);
+        }
+        snapshot = merge(old, replaced, fresh.sorted(inStock, present));
+    }
+
+    private void drop(Collection<Integer> bottleIds) {
+        if (bottleIds.isEmpty()) return;
+        Snapshot old = snapshot;
+        BitSet removed = new BitSet();
+        BitSet inStock = (BitSet) old.inStock.clone();
+        BitSet present = (BitSet) old.present.clone();
+        for (Integer id : bottleIds) {
+            removed.set(id);
+            inStock.clear(id);
+            present.clear(id);
+        }
+        snapshot = merge(old, removed, new Builder(0).sorted(inStock, present));
+    }
+
+    /** Drops every bottle not in {@code bottleIds}; used after a full rebuild. */
+    public synchronized void retainOnly(Collection<Integer> bottleIds) {
+        BitSet gone = (BitSet) snapshot.present.clone();
+        for (Integer id : bottleIds) gone.clear(id);
+        remove(gone.stream().boxed().toList());
+    }
+
+    /** Bottle ids with at least one price in [min, max]; null bounds are open. A fresh, caller-owned bitmap. */
+    public BitSet range(Double min, Double max) {
+        Snapshot s = snapshot;
+        int from = min == null ? 0 : lowerBound(s.prices, min);
+        int to = max == null ? s.prices.length : upperBound(s.prices, max);
+        BitSet out = new BitSet();
+        for (int i = from; i < to; i++) out.set(s.ids[i]);
+        return out;
+    }
+
+    /** Bottles with stock in bottles or crates. A copy; the caller may modify it. */
+    public BitSet inStock() {
+        return (BitSet) snapshot.inStock.clone();
+    }
+
+    // first index with price >= key
+    private static int lowerBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // first index with price > key
+    private static int upperBound(double[] a, double key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Old entries minus those of {@code dropped} bottles, merged with the already sorted {@code added}. */
+    private static Snapshot merge(Snapshot old, BitSet dropped, Snapshot added) {
+        int n = old.prices.length, m = added.prices.length;
+        double[] prices = new double[n + m];
+        int[] ids = new int[n + m];
+        int i = 0, j = 0, k = 0;
+        while (i < n || j < m) {
+            if (i < n && dropped.get(old.ids[i])) { i++; continue; }
+            if (j >= m || (i < n && old.prices[i] <= added.prices[j])) {
+                prices[k] = old.prices[i]; ids[k++] = old.ids[i++];
+            } else {
+                prices[k] = added.prices[j]; ids[k++] = added.ids[j++];
+            }
+        }
+        return new Snapshot(Arrays.copyOf(prices, k), Arrays.copyOf(ids, k), added.inStock, added.present);
+    }
+
+    /** Growable pair of primitive arrays, sorted by price once complete. */
+    private static final class Builder {
+        double[] prices;
+        int[] ids;
+        int size;
+
+        Builder(int capacity) {
+            prices = new double[Math.max(capacity, 1)];
+            ids = new int[prices.length];
+        }
+
+        void add(UnifiedBeverage ub, BitSet inStock, BitSet present) {
+            int id = ub.getBottleId();
+            present.set(id);
+            Integer crates = ub.getTotalBottlesInCrates();
+            if (ub.getBottlesInStock() > 0 || (crates != null && crates > 0)) inStock.set(id);
+            append(ub.getPricePerBottle(), id);
+            if (ub.getPricePerCrate() != null) append(ub.getPricePerCrate(), id);
+        }
+
+        private void append(double price, int id) {
+            if (Double.isNaN(price)) return; // never within a range, as in Mongo
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            prices[size] = price;
+            ids[size++] = id;
+        }
+
+        Snapshot sorted(BitSet inStock, BitSet present) {
+            double[] p = Arrays.copyOf(prices, size);
+            int[] d = Arrays.copyOf(ids, size);
+            // bottom-up merge sort of the parallel arrays: no boxing, stable, O(n log n)
+            double[] pt = new double[size];
+            int[] dt = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int lo = 0; lo < size; lo += 2 * width) {
+                    int mid = Math.min(lo + width, size), hi = Math.min(lo + 2 * width, size);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid || j < hi) {
+                        if (j >= hi || (i < mid && p[i] <= p[j])) { pt[k] = p[i]; dt[k++] = d[i++]; }
+                        else { pt[k] = p[j]; dt[k++] = d[j++]; }
+                    }
+                }
+                double[] sp = p; p = pt; pt = sp;
+                int[] sd = d; d = dt; dt = sd;
+            }
+            return new Snapshot(p, d, inStock, present);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.search;
+
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Projections;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.bson.conversions.Bson;
+import org.example.daos.codecs.Codecs;
+import org.example.db.CollectionVersions;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.logging.RequestLog;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Loads the {@link NameIndex} and {@link PriceIndex} from the beverages collection at startup and
+ * reloads them in the background after another replica wrote beverages. Local writes reach the
+ * index right away through the projector, so they never cause a reload; reloads only pick up
+ * what other replicas wrote.
+ *
+ * Reloads read the primary, so a snapshot is never older than the version it is recorded for.
+ * Projector updates that land while a reload runs may still be newer than its snapshot; their
+ * ids are tracked and re-read from the primary after the swap until no more arrive.
+ */
+@Singleton
+public class SearchIndexLoader {
+    private static final RequestLog log = RequestLog.get("SearchIndexLoader");
+    private static final int MAX_REREADS = 10;
+    private static final Bson FIELDS = Projections.include("bottleId", "name", "pricePerBottle", "pricePerCrate", "price",
+            "bottlesInStock", "totalBottlesInCrates");
+
+    private final MongoCollection<UnifiedBeverage> col;
+    private final CollectionVersions versions;
+    private final NameIndex names;
+    private final PriceIndex prices;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "search-index-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // set by another replica's write (or an unfinished reload); cleared when a reload starts
+    private volatile boolean stale = true;
+
+    @Inject
+    public SearchIndexLoader(MongoClient client, CollectionVersions versions, NameIndex names, PriceIndex prices) {
+        String dbName = System.getenv().getOrDefault("MONGO_DB", "beverage");
+        this.col = client.getDatabase(dbName)
+                .getCollection("beverages", UnifiedBeverage.class)
+                .withCodecRegistry(Codecs.REGISTRY)
+                .withReadPreference(ReadPreference.primary());
+        this.versions = versions;
+        this.names = names;
+        this.prices = prices;
+        this.intervalMillis = Long.parseLong(System.getenv().getOrDefault("SEARCH_INDEX_REFRESH_MS", "10000"));
+        versions.onChange("beverages", () -> stale = true);
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /** Reloads unconditionally; returns the number of beverages indexed. */
+    public int reload() {
+        names.touched.start();
+        prices.touched.start();
+        try {
+            List<UnifiedBeverage> all = col.find().projection(FIELDS).into(new ArrayList<>());
+            names.replaceAll(all);
+            prices.replaceAll(all);
+            Set<Integer> ids = drainTouched();
+            for (int round = 0; !ids.isEmpty() && round < MAX_REREADS; round++) {
+                reread(ids);
+                ids = drainTouched();
+            }
+            // still busy: keep what we have, and reload again on the next refresh
+            if (!ids.isEmpty()) stale = true;
+            return all.size();
+        } finally {
+            names.touched.stop();
+            prices.touched.stop();
+        }
+    }
+
+    private Set<Integer> drainTouched() {
+        Set<Integer> ids = names.touched.drain();
+        ids.addAll(prices.touched.drain());
+        return ids;
+    }
+
+    // a projector update racing this re-read is tracked again, so the loop re-reads it once more
+    private void reread(Set<Integer> ids) {
+        List<UnifiedBeverage> fresh = col.find(in("bottleId", ids)).projection(FIELDS).into(new ArrayList<>());
+        Set<Integer> gone = new HashSet<>(ids);
+        for (UnifiedBeverage ub : fresh) gone.remove(ub.getBottleId());
+        names.reapply(fresh, gone);
+        prices.reapply(fresh, gone);
+    }
+
+    private void refresh() {
+        if (names.isReady() && prices.isReady() && !stale) return;
+        // cleared first, so a remote write landing during the reload schedules another one
+        stale = false;
+        try {
+            long start = System.currentTimeMillis();
+            int size = reload();
+            log.log(Level.FINE, "search indexes reloaded", "beverages", size, "durationMs", System.currentTimeMillis() - start);
+        } catch (MongoException e) {
+            stale = true;
+            log.log(Level.WARNING, "search index load failed", "error", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.search;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bottle ids changed through an index's incremental mutators while a full reload is running.
+ * The reload's snapshot may predate those changes, so {@link SearchIndexLoader} re-reads the ids
+ * after swapping the snapshot in instead of letting it overwrite them.
+ */
+final class TouchedIds {
+
+    private final Set<Integer> ids = ConcurrentHashMap.newKeySet();
+    private volatile boolean tracking;
+
+    void start() {
+        ids.clear();
+        tracking = true;
+    }
+
+    void stop() {
+        tracking = false;
+        ids.clear();
+    }
+
+    void add(int id) {
+        if (tracking) ids.add(id);
+    }
+
+    void addAll(Collection<Integer> bottleIds) {
+        if (tracking) ids.addAll(bottleIds);
+    }
+
+    /** The ids touched since the last drain. */
+    Set<Integer> drain() {
+        Set<Integer> out = new HashSet<>(ids);
+        ids.removeAll(out);
+        return out;
+    }
+}
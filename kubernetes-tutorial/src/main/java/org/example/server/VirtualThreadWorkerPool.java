@@ -0,0 +1,86 @@
+package org.example.server;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grizzly worker pool that runs every request on its own virtual thread.
+ * At most {@code maxInFlight} requests execute at once; the rest wait parked on
+ * a semaphore, which costs a few hundred bytes per request instead of a platform thread.
+ */
+public class VirtualThreadWorkerPool extends AbstractExecutorService {
+
+    private final ThreadFactory factory = Thread.ofVirtual().name("http-worker-", 0).factory();
+    private final Semaphore permits;
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    public VirtualThreadWorkerPool(int maxInFlight) {
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) throw new RejectedExecutionException("Worker pool is shut down");
+        Thread t = factory.newThread(() -> {
+            try {
+                permits.acquire();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                // interrupted by shutdownNow while waiting for a permit; the task never ran
+            } finally {
+                threads.remove(Thread.currentThread());
+            }
+        });
+        threads.add(t);
+        t.start();
+    }
+
+    /** Requests currently holding a permit. */
+    public int inFlight() {
+        return threads.size() - permits.getQueueLength();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        for (Thread t : threads) t.interrupt();
+        return List.of();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && threads.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread t : threads) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return false;
+            t.join(java.time.Duration.ofNanos(left));
+        }
+        return isTerminated();
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.services;
+
+import com.mongodb.MongoException;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.example.daos.BeverageDaoMongo;
+import org.example.daos.BottleDaoMongo;
+import org.example.daos.CrateDaoMongo;
+import org.example.daos.CrateDaoMongo.CrateRecord;
+import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.logging.RequestLog;
+import org.example.mappers.BeverageMapper;
+import org.example.model.Bottle;
+import org.example.model.Crate;
+import org.example.search.NameIndex;
+import org.example.search.PriceIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Keeps the denormalized "beverages" collection in sync with bottles and crates.
+ * Every bottle/crate write re-projects the affected bottle ids with upserts;
+ * {@link #rebuild()} recomputes the whole collection for recovery. Projections of the same
+ * bottle are serialized within this process; two replicas writing one bottle at once can
+ * still race, which the next write to it (or a rebuild) repairs.
+ */
+@Singleton
+public class BeverageProjector {
+    private static final RequestLog log = RequestLog.get("BeverageProjector");
+    private static final int REBUILD_BATCH = 500;
+    private static final int LOCK_STRIPES = 64;
+
+    private final BottleDaoMongo bottleDao;
+    private final CrateDaoMongo crateDao;
+    private final BeverageDaoMongo beverageDao;
+    private final NameIndex names;
+    private final PriceIndex prices;
+    // ReentrantLock rather than synchronized: projections block on Mongo, possibly on virtual threads
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    @Inject
+    public BeverageProjector(BottleDaoMongo bottleDao, CrateDaoMongo crateDao, BeverageDaoMongo beverageDao,
+                             NameIndex names, PriceIndex prices) {
+        this.bottleDao = bottleDao;
+        this.crateDao = crateDao;
+        this.beverageDao = beverageDao;
+        this.names = names;
+        this.prices = prices;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    public void onBottleChanged(int bottleId) {
+        project(List.of(bottleId));
+    }
+
+    public void onCrateChanged(int bottleId) {
+        project(List.of(bottleId));
+    }
+
+    /**
+     * Re-projects the given bottles. A failure here leaves the read model stale but
+     * must not fail the write that triggered it, so it is logged; rebuild() repairs it.
+     */
+    public void project(Collection<Integer> bottleIds) {
+        if (bottleIds.isEmpty()) return;
+        try {
+            projectLocked(bottleIds);
+        } catch (MongoException e) {
+            log.log(Level.WARNING, "projection failed", "bottleIds", bottleIds, "error", e.getMessage());
+        }
+    }
+
+    /** Recomputes the whole read model from bottles and crates. Returns the number of entries written. */
+    public int rebuild() {
+        List<Integer> bottleIds = new ArrayList<>();
+        for (Bottle b : bottleDao.findAllFromPrimary()) bottleIds.add(b.getId());
+        // batches go through the same locked path as writes, so a rebuild never overwrites a newer projection
+        for (int i = 0; i < bottleIds.size(); i += REBUILD_BATCH) {
+            projectLocked(bottleIds.subList(i, Math.min(i + REBUILD_BATCH, bottleIds.size())));
+        }
+        long removed = beverageDao.deleteAllExcept(bottleIds);
+        names.retainOnly(bottleIds);
+        prices.retainOnly(bottleIds);
+        log.info("beverages rebuilt", "upserted", bottleIds.size(), "removed", removed);
+        return bottleIds.size();
+    }
+
+    /**
+     * Reads and upserts while holding the stripes of all given bottle ids. Two writes to one bottle
+     * then project in the order they read, so the older read can't land last in the read model.
+     * Stripes are taken in index order, so overlapping batches can't deadlock.
+     */
+    private void projectLocked(Collection<Integer> bottleIds) {
+        int[] held = new TreeSet<>(bottleIds.stream().map(BeverageProjector::stripe).toList())
+                .stream().mapToInt(Integer::intValue).toArray();
+        for (int stripe : held) locks[stripe].lock();
+        try {
+            // uncached: a cache entry may predate another replica's write and would be projected over it
+            Map<Integer, Bottle> bottles = bottleDao.findByIdsFromPrimary(bottleIds);
+            Map<Integer, CrateRecord> crates = firstCratePerBottle(crateDao.findByBottleIdsRecords(bottleIds));
+
+            List<UnifiedBeverage> upserts = new ArrayList<>();
+            Set<Integer> gone = new HashSet<>();
+            for (Integer id : bottleIds) {
+                Bottle b = bottles.get(id);
+                if (b == null) gone.add(id);
+                else upserts.add(toBeverage(b, crates.get(id)));
+            }
+            beverageDao.upsertAll(upserts);
+            beverageDao.deleteByBottleIds(gone);
+            upserts.forEach(names::put);
+            names.remove(gone);
+            prices.putAll(upserts);
+            prices.remove(gone);
+        } finally {
+            for (int i = held.length - 1; i >= 0; i--) locks[held[i]].unlock();
+        }
+    }
+
+    private static int stripe(int bottleId) {
+        return Math.floorMod(bottleId, LOCK_STRIPES);
+    }
+
+    private static UnifiedBeverage toBeverage(Bottle b, CrateRecord r) {
+        Crate crate = r == null ? null : new Crate(r.id, b, r.bottlesPerCrate, r.price, r.inStock);
+        return BeverageMapper.fromBottleAndCrate(b, crate);
+    }
+
+    // A bottle is sold in at most one crate in the read model; the lowest crate id wins.
+    private static Map<Integer, CrateRecord> firstCratePerBottle(List<CrateRecord> records) {
+        Map<Integer, CrateRecord> out = new HashMap<>();
+        for (CrateRecord r : records) {
+            CrateRecord existing = out.get(r.bottleId);
+            if (existing == null || r.id < existing.id) out.put(r.bottleId, r);
+        }
+        return out;
+    }
+}
@@ -1,24 +1,59 @@
 package org.example.services;
 
+import com.mongodb.client.MongoIterable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.example.daos.BeverageCursor;
 import org.example.daos.BeverageDaoMongo;
 import org.example.dto.beverageDTOs.UnifiedBeverage;
+import org.example.search.NameIndex;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 
 @Singleton
 public class BeverageService {
 
     private final BeverageDaoMongo dao;
+    private final NameIndex names;
 
     @Inject
-    public BeverageService(BeverageDaoMongo dao) { this.dao = dao; }
+    public BeverageService(BeverageDaoMongo dao, NameIndex names) {
+        this.dao = dao;
+        this.names = names;
+    }
 
     public BeverageDaoMongo.PagedResult<UnifiedBeverage> getAll(
             boolean inStockOnly, String name, Double minPrice, Double maxPrice, int page, int perPage) {
         return dao.findFiltered(inStockOnly, name, minPrice, maxPrice, page, perPage);
     }
 
+    public CompletionStage<BeverageDaoMongo.PagedResult<UnifiedBeverage>> getAllAsync(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice, int page, int perPage) {
+        return dao.findFilteredAsync(inStockOnly, name, minPrice, maxPrice, page, perPage);
+    }
+
+    public MongoIterable<UnifiedBeverage> iterate(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice, int skip, int limit) {
+        return dao.iterateFiltered(inStockOnly, name, minPrice, maxPrice, skip, limit);
+    }
+
+    public BeverageDaoMongo.CursorPage<UnifiedBeverage> getPageAfter(
+            boolean inStockOnly, String name, Double minPrice, Double maxPrice,
+            BeverageCursor after, int limit, boolean withTotal) {
+        return dao.findAfter(inStockOnly, name, minPrice, maxPrice, after, limit, withTotal);
+    }
+
+    /** Autocomplete from the in-memory name index; null while the index has not been loaded. */
+    public List<NameIndex.Suggestion> suggest(String query, int limit, boolean inStockOnly) {
+        return names.isReady() ? names.suggest(query, limit, inStockOnly) : null;
+    }
+
     public UnifiedBeverage getByBottleId(int bottleId) {
         return dao.findByBottleId(bottleId).orElse(null);
     }
+
+    public CompletionStage<UnifiedBeverage> getByBottleIdAsync(int bottleId) {
+        return dao.findByBottleIdAsync(bottleId).thenApply(ub -> ub.orElse(null));
+    }
 }
@@ -1,23 +1,33 @@
 package org.example.services;
 
+import com.mongodb.client.MongoIterable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.example.daos.BottleDaoMongo;
+import org.example.daos.Neighbours;
 import org.example.model.Bottle;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 @Singleton
 public class BottleService {
 
     private final BottleDaoMongo dao;
+    private final BeverageProjector projector;
 
     @Inject
-    public BottleService(BottleDaoMongo dao) {
+    public BottleService(BottleDaoMongo dao, BeverageProjector projector) {
         this.dao = dao;
+        this.projector = projector;
     }
 
-    public List<Bottle> getAll() { return dao.findAll(); }
+    public List<Bottle> getPage(int skip, int limit) { return dao.findPage(skip, limit); }
+
+    public MongoIterable<Bottle> iteratePage(int skip, int limit) { return dao.iteratePage(skip, limit); }
 
     public List<Bottle> getAlcoholicBottles() { return dao.findAlcoholic(); }
 
@@ -31,13 +41,57 @@ public class BottleService {
 
     public Bottle getById(int id) { return dao.findById(id).orElse(null); }
 
+    public Neighbours<Bottle> getWithNeighbours(int id) { return dao.findWithNeighbours(id).orElse(null); }
+
+    public CompletionStage<Neighbours<Bottle>> getWithNeighboursAsync(int id) {
+        return dao.findWithNeighboursAsync(id).thenApply(n -> n.orElse(null));
+    }
+
+    public Map<Integer, Bottle> getByIds(Collection<Integer> ids) { return dao.findByIds(ids); }
+
     public Bottle getByName(String name) { return dao.findByName(name).orElse(null); }
 
-    public int getSize() { return (int) dao.count(); }
+    public Bottle addBottle(Bottle b) {
+        Bottle created = dao.insert(b);
+        projector.onBottleChanged(created.getId());
+        return created;
+    }
+
+    /** Inserts a batch of bottles; returns the error per failed batch index. */
+    public Map<Integer, String> addAll(List<Bottle> bottles) {
+        Map<Integer, String> failed = dao.insertAll(bottles);
+        List<Integer> created = new ArrayList<>(bottles.size());
+        for (int i = 0; i < bottles.size(); i++) {
+            if (!failed.containsKey(i)) created.add(bottles.get(i).getId());
+        }
+        projector.project(created);
+        return failed;
+    }
 
-    public Bottle addBottle(Bottle b) { return dao.insert(b); }
+    public boolean updateById(int id, Bottle updated) {
+        boolean ok = dao.updateById(id, updated);
+        if (ok) projector.onBottleChanged(id);
+        return ok;
+    }
 
-    public boolean updateById(int id, Bottle updated) { return dao.updateById(id, updated); }
+    /** Returns the bottle after the change, or null when the id is unknown or stock would go negative. */
+    public Bottle adjustStock(int id, int delta) {
+        Bottle b = dao.adjustStock(id, delta).orElse(null);
+        if (b != null) projector.onBottleChanged(id);
+        return b;
+    }
 
-    public boolean deleteById(int id) { return dao.deleteById(id); }
+    public int adjustStockAll(Map<Integer, Integer> deltas) {
+        int applied = dao.adjustStockAll(deltas);
+        if (applied > 0) projector.project(deltas.keySet());
+        return applied;
+    }
+
+    public boolean exists(int id) { return dao.exists(id); }
+
+    public boolean deleteById(int id) {
+        boolean ok = dao.deleteById(id);
+        if (ok) projector.onBottleChanged(id);
+        return ok;
+    }
 }
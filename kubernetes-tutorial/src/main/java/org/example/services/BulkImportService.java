@@ -0,0 +1,198 @@
+package org.example.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.example.daos.CrateDaoMongo.CrateRecord;
+import org.example.dto.bottleDTOs.NewBottle;
+import org.example.dto.bulkDTOs.BulkItemResult;
+import org.example.dto.crateDTOs.NewCrate;
+import org.example.model.Bottle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams NDJSON (or a JSON array) of new bottles/crates, validates each item as it
+ * is read and writes valid ones with one unordered bulkWrite per batch. Only one batch
+ * is held in memory; results are handed to the sink as each batch completes.
+ */
+@Singleton
+public class BulkImportService {
+
+    public interface ResultSink {
+        void write(BulkItemResult result) throws IOException;
+        /** Called after every batch so results reach the client while the upload continues. */
+        void flush() throws IOException;
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("BULK_BATCH_SIZE", "500"));
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final BottleService bottleService;
+    private final CrateService crateService;
+
+    @Inject
+    public BulkImportService(BottleService bottleService, CrateService crateService) {
+        this.bottleService = bottleService;
+        this.crateService = crateService;
+    }
+
+    public void importBottles(InputStream in, int batchSize, ResultSink sink) throws IOException {
+        List<Integer> indexes = new ArrayList<>(batchSize);
+        List<Bottle> batch = new ArrayList<>(batchSize);
+        try (MappingIterator<NewBottle> it = MAPPER.readerFor(NewBottle.class).readValues(in)) {
+            forEachItem(it, sink, (index, nb) -> {
+                indexes.add(index);
+                batch.add(new Bottle(0, nb.getName(), nb.getVolume(), nb.getIsAlcoholic(), nb.getVolumePercent(),
+                        nb.getPrice(), nb.getSupplier(), nb.getInStock()));
+                if (batch.size() == batchSize) flushBottles(indexes, batch, sink);
+            });
+        }
+        // only on normal completion: after a failure the client is gone or the stream unusable
+        flushBottles(indexes, batch, sink);
+    }
+
+    public void importCrates(InputStream in, int batchSize, ResultSink sink) throws IOException {
+        List<Integer> indexes = new ArrayList<>(batchSize);
+        List<CrateRecord> batch = new ArrayList<>(batchSize);
+        try (MappingIterator<NewCrate> it = MAPPER.readerFor(NewCrate.class).readValues(in)) {
+            forEachItem(it, sink, (index, nc) -> {
+                indexes.add(index);
+                batch.add(new CrateRecord(0, nc.getBottleId(), nc.getNoOfBottles(), nc.getPrice(), nc.getInStock()));
+                if (batch.size() == batchSize) flushCrates(indexes, batch, sink);
+            });
+        }
+        flushCrates(indexes, batch, sink);
+    }
+
+    private void flushBottles(List<Integer> pendingIndexes, List<Bottle> pending, ResultSink sink) throws IOException {
+        if (pending.isEmpty()) return;
+        List<Integer> indexes = take(pendingIndexes);
+        List<Bottle> batch = take(pending);
+        Map<Integer, String> failed;
+        try {
+            failed = bottleService.addAll(batch);
+        } catch (RuntimeException e) {
+            failed = allFailed(batch.size(), e);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String error = failed.get(i);
+            sink.write(error == null
+                    ? BulkItemResult.created(indexes.get(i), batch.get(i).getId())
+                    : BulkItemResult.failed(indexes.get(i), error));
+        }
+        sink.flush();
+    }
+
+    private void flushCrates(List<Integer> pendingIndexes, List<CrateRecord> pending, ResultSink sink) throws IOException {
+        if (pending.isEmpty()) return;
+        List<Integer> indexes = take(pendingIndexes);
+        List<CrateRecord> batch = take(pending);
+        // one query checks every referenced bottle of the batch
+        List<Integer> bottleIds = new ArrayList<>(batch.size());
+        for (CrateRecord r : batch) bottleIds.add(r.bottleId);
+        Map<Integer, Bottle> bottles;
+        try {
+            bottles = bottleService.getByIds(bottleIds);
+        } catch (RuntimeException e) {
+            Map<Integer, String> failed = allFailed(batch.size(), e);
+            for (int i = 0; i < batch.size(); i++) sink.write(BulkItemResult.failed(indexes.get(i), failed.get(i)));
+            sink.flush();
+            return;
+        }
+
+        List<Integer> validIndexes = new ArrayList<>(batch.size());
+        List<CrateRecord> valid = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CrateRecord r = batch.get(i);
+            if (bottles.containsKey(r.bottleId)) {
+                validIndexes.add(indexes.get(i));
+                valid.add(r);
+            } else {
+                sink.write(BulkItemResult.invalid(indexes.get(i), List.of("Bottle with ID " + r.bottleId + " not found")));
+            }
+        }
+
+        Map<Integer, String> failed;
+        try {
+            failed = valid.isEmpty() ? Map.of() : crateService.addAll(valid);
+        } catch (RuntimeException e) {
+            failed = allFailed(valid.size(), e);
+        }
+        for (int i = 0; i < valid.size(); i++) {
+            String error = failed.get(i);
+            sink.write(error == null
+                    ? BulkItemResult.created(validIndexes.get(i), valid.get(i).id)
+                    : BulkItemResult.failed(validIndexes.get(i), error));
+        }
+        sink.flush();
+    }
+
+    /**
+     * Moves the pending items out before anything is inserted or written, so a sink failure
+     * halfway through the results can never get the same batch inserted a second time.
+     */
+    private static <T> List<T> take(List<T> pending) {
+        List<T> taken = new ArrayList<>(pending);
+        pending.clear();
+        return taken;
+    }
+
+    private interface ItemHandler<T> {
+        void accept(int index, T item) throws IOException;
+    }
+
+    /**
+     * Reads items one at a time and passes the valid ones on. Items that don't bind or
+     * validate are reported as invalid and skipped; a syntax error ends the import
+     * because the stream can't be resynchronised after it.
+     */
+    private static <T> void forEachItem(MappingIterator<T> it, ResultSink sink, ItemHandler<T> handler) throws IOException {
+        int index = 0;
+        while (true) {
+            T item;
+            try {
+                if (!it.hasNextValue()) return;
+                item = it.nextValue();
+            } catch (JsonMappingException e) {
+                sink.write(BulkItemResult.invalid(index++, List.of(e.getOriginalMessage())));
+                continue;
+            } catch (JsonProcessingException e) {
+                sink.write(BulkItemResult.failed(index, "Malformed JSON: " + e.getOriginalMessage()));
+                return;
+            }
+            List<String> errors = validate(item);
+            if (errors.isEmpty()) handler.accept(index++, item);
+            else sink.write(BulkItemResult.invalid(index++, errors));
+        }
+    }
+
+    private static <T> List<String> validate(T item) {
+        if (item == null) return List.of("Item must not be null");
+        Set<ConstraintViolation<T>> violations = VALIDATOR.validate(item);
+        List<String> errors = new ArrayList<>(violations.size());
+        for (ConstraintViolation<T> v : violations) errors.add(v.getPropertyPath() + ": " + v.getMessage());
+        return errors;
+    }
+
+    private static Map<Integer, String> allFailed(int size, RuntimeException e) {
+        Map<Integer, String> failed = new HashMap<>();
+        for (int i = 0; i < size; i++) failed.put(i, e.getMessage());
+        return failed;
+    }
+}
@@ -1,25 +1,32 @@
 package org.example.services;
 
+import com.mongodb.client.MongoIterable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.example.daos.CrateDaoMongo;
 import org.example.daos.CrateDaoMongo.CrateRecord;
+import org.example.daos.Neighbours;
 import org.example.model.Bottle;
 import org.example.model.Crate;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 @Singleton
 public class CrateService {
 
     private final CrateDaoMongo dao;
     private final BottleService bottleService;
+    private final BeverageProjector projector;
 
     @Inject
-    public CrateService(CrateDaoMongo dao, BottleService bottleService) {
+    public CrateService(CrateDaoMongo dao, BottleService bottleService, BeverageProjector projector) {
         this.dao = dao;
         this.bottleService = bottleService;
+        this.projector = projector;
     }
 
     private Crate toDomain(CrateRecord r) {
@@ -27,21 +34,22 @@ public class CrateService {
         if (bottle == null) return null;
         return new Crate(r.id, bottle, r.bottlesPerCrate, r.price, r.inStock);
     }
+
     private CrateRecord toRecord(Crate c) {
         return new CrateRecord(c.getId(), c.getBottle().getId(), c.getNoOfBottles(), c.getPrice(), c.getInStock());
     }
 
-    public List<Crate> getAll() {
-        List<Crate> out = new ArrayList<>();
-        for (CrateRecord r : dao.findAllRecords()) {
-            Crate c = toDomain(r);
-            if (c != null) out.add(c);
-        }
-        return out;
+    // list reads join bottles server-side ($lookup), so orphaned crates never reach us
+    public CompletionStage<List<Crate>> getPageAsync(int skip, int limit) {
+        return dao.findCratePageAsync(skip, limit);
+    }
+
+    public MongoIterable<Crate> iteratePage(int skip, int limit) {
+        return dao.iterateCratePage(skip, limit);
     }
 
-    public Crate getById(int id) {
-        return dao.findByIdRecord(id).map(this::toDomain).orElse(null);
+    public Neighbours<Crate> getWithNeighbours(int id) {
+        return dao.findWithNeighbours(id).orElse(null);
     }
 
     public Crate getByName(String name) {
@@ -51,41 +59,68 @@ public class CrateService {
     }
 
     public List<Crate> filter(Double minPrice, Double maxPrice, String name) {
-        List<CrateRecord> base;
         if (name != null && !name.isBlank()) {
             Bottle b = bottleService.getByName(name);
             if (b == null) return List.of();
-            base = dao.findByBottleIdRecord(b.getId()).map(List::of).orElse(List.of());
-            base = base.stream()
-                    .filter(r -> (minPrice == null || r.price >= minPrice) &&
-                            (maxPrice == null || r.price <= maxPrice))
-                    .toList();
-        } else {
-            base = (minPrice != null || maxPrice != null)
-                    ? dao.findByPriceRangeRecords(minPrice, maxPrice)
-                    : dao.findAllRecords();
+            return dao.findCratesFiltered(b.getId(), minPrice, maxPrice);
         }
-        List<Crate> out = new ArrayList<>();
-        for (CrateRecord r : base) {
-            Crate c = toDomain(r);
-            if (c != null) out.add(c);
-        }
-        return out;
+        return (minPrice != null || maxPrice != null)
+                ? dao.findCratesFiltered(null, minPrice, maxPrice)
+                : dao.findAllCrates();
     }
 
-    public int getSize() { return (int) dao.count(); }
-
     public Crate add(Crate crate) {
         CrateRecord rec = toRecord(crate);
         CrateRecord inserted = dao.insertRecord(rec);
+        projector.onCrateChanged(inserted.bottleId);
         return toDomain(inserted);
     }
 
+    /** Inserts a batch of crate records; returns the error per failed batch index. */
+    public Map<Integer, String> addAll(List<CrateRecord> records) {
+        Map<Integer, String> failed = dao.insertAllRecords(records);
+        Set<Integer> bottleIds = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            if (!failed.containsKey(i)) bottleIds.add(records.get(i).bottleId);
+        }
+        projector.project(bottleIds);
+        return failed;
+    }
+
     public boolean updateById(int id, Crate updated) {
-        return dao.updateByIdRecord(id, toRecord(updated));
+        Integer oldBottleId = dao.findByIdRecord(id).map(r -> r.bottleId).orElse(null);
+        CrateRecord rec = toRecord(updated);
+        boolean ok = dao.updateByIdRecord(id, rec);
+        if (ok) {
+            // a crate moved to another bottle changes both projections
+            projector.project(oldBottleId == null || oldBottleId == rec.bottleId
+                    ? List.of(rec.bottleId) : List.of(oldBottleId, rec.bottleId));
+        }
+        return ok;
+    }
+
+    /**
+     * Returns the record after the change, or null when the id is unknown or stock would go negative.
+     * A non-null result means the write happened, even if the crate's bottle no longer exists.
+     */
+    public CrateRecord adjustStock(int id, int delta) {
+        CrateRecord r = dao.adjustStock(id, delta).orElse(null);
+        if (r != null) projector.onCrateChanged(r.bottleId);
+        return r;
     }
 
+    public int adjustStockAll(Map<Integer, Integer> deltas) {
+        int applied = dao.adjustStockAll(deltas);
+        if (applied > 0) projector.project(dao.findBottleIdsOf(deltas.keySet()));
+        return applied;
+    }
+
+    public boolean exists(int id) { return dao.exists(id); }
+
     public boolean deleteById(int id) {
-        return dao.deleteById(id);
+        Integer bottleId = dao.findByIdRecord(id).map(r -> r.bottleId).orElse(null);
+        boolean ok = dao.deleteById(id);
+        if (ok && bottleId != null) projector.onCrateChanged(bottleId);
+        return ok;
     }
 }